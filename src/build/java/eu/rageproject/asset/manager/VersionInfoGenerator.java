@@ -0,0 +1,269 @@
+package eu.rageproject.asset.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Compiles <code>&lt;AssetType&gt;.VersionAndDependencies.xml</code>
+ * resources into Java classes, so version information can be loaded without
+ * parsing XML at runtime.
+ *
+ * <p>
+ * For each resource a class named
+ * <code>&lt;AssetType&gt;VersionAndDependencies</code> is generated in the
+ * package of the resource, with a <code>public static RageVersionInfo
+ * create()</code> method. {@link RageVersionInfo#getVersionInfo(Class)} uses
+ * the generated class when it is on the classpath and falls back to the XML
+ * resource otherwise.
+ * </p>
+ *
+ * <p>
+ * The generator is a build tool and is not part of the library: it lives in
+ * <code>src/build/java</code> and the build compiles it and runs it with the
+ * <code>exec-maven-plugin</code> over the main and the test resources before
+ * compiling them:
+ * </p>
+ * {@code
+   java eu.rageproject.asset.manager.VersionInfoGenerator <resources dir> <output dir>
+   }
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * The XML is read with the JDK DOM parser, so the build does not need JAXB.
+ * Integer elements that are empty or not numbers are set to 0, as JAXB does
+ * when it parses the XML resource.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class VersionInfoGenerator {
+
+	/**
+	 * Suffix of the generated class names, the one
+	 * <code>RageVersionInfo.GENERATED_SUFFIX</code> looks up. The generator is
+	 * compiled before the library, so it cannot reference it.
+	 */
+	static final String CLASS_SUFFIX = "VersionAndDependencies";
+
+	private static final String RESOURCE_SUFFIX = ".VersionAndDependencies.xml";
+
+	private static final String INFO = "eu.rageproject.asset.manager.RageVersionInfo";
+
+	private static final String DEPENDENCY = INFO + ".Dependency";
+
+	private final DocumentBuilder builder;
+
+	private VersionInfoGenerator() throws ParserConfigurationException {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setExpandEntityReferences(false);
+		factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+		this.builder = factory.newDocumentBuilder();
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: VersionInfoGenerator <resources dir> <output dir>");
+			System.exit(1);
+		}
+		int count = generate(Paths.get(args[0]), Paths.get(args[1]));
+		System.out.println(String.format("Generated version information of %d Asset(s)", count));
+	}
+
+	/**
+	 * Generates the classes of all the version resources under a directory.
+	 * Classes whose content does not change are not rewritten.
+	 *
+	 * @param resources
+	 *            The resources root directory.
+	 * @param output
+	 *            The generated sources root directory.
+	 *
+	 * @return the number of resources found.
+	 *
+	 * @throws IOException
+	 *             if a resource cannot be read or is not well formed, or a
+	 *             class cannot be written.
+	 */
+	public static int generate(final Path resources, final Path output) throws IOException {
+		if (!Files.isDirectory(resources)) {
+			return 0;
+		}
+
+		final VersionInfoGenerator generator;
+		try {
+			generator = new VersionInfoGenerator();
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e);
+		}
+
+		final int[] count = new int[1];
+		Files.walkFileTree(resources, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+				String name = file.getFileName().toString();
+				if (name.endsWith(RESOURCE_SUFFIX)) {
+					String asset = name.substring(0, name.length() - RESOURCE_SUFFIX.length());
+					Path relative = resources.relativize(file).getParent();
+					String pkg = relative == null ? "" : relative.toString().replace(relative.getFileSystem()
+							.getSeparator().charAt(0), '.');
+
+					String source = generator.generate(file, pkg, asset);
+
+					Path target = relative == null ? output : output.resolve(relative);
+					Files.createDirectories(target);
+					target = target.resolve(asset + CLASS_SUFFIX + ".java");
+					byte[] content = source.getBytes(StandardCharsets.UTF_8);
+					if (!Files.exists(target) || !Arrays.equals(Files.readAllBytes(target), content)) {
+						Files.write(target, content);
+					}
+					count[0]++;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return count[0];
+	}
+
+	private String generate(final Path file, final String pkg, final String asset) throws IOException {
+		Element version;
+		try {
+			Document document = this.builder.parse(file.toFile());
+			version = document.getDocumentElement();
+		} catch (SAXException e) {
+			throw new IOException(String.format("Unable to parse %s", file), e);
+		}
+
+		String clazz = asset + CLASS_SUFFIX;
+		StringBuilder source = new StringBuilder();
+		if (!pkg.isEmpty()) {
+			source.append("package ").append(pkg).append(";\n\n");
+		}
+		source.append("/**\n");
+		source.append(" * Version and dependencies of {@code ").append(asset).append("}.\n");
+		source.append(" *\n");
+		source.append(" * Generated by {@code eu.rageproject.asset.manager.VersionInfoGenerator} from\n");
+		source.append(" * ").append(asset).append(RESOURCE_SUFFIX).append(", do not edit.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(clazz).append(" {\n\n");
+		source.append("\tprivate ").append(clazz).append("() {\n\t}\n\n");
+		source.append("\tpublic static ").append(INFO).append(" create() {\n");
+		source.append("\t\t").append(INFO).append(" info = new ").append(INFO).append("();\n");
+
+		appendString(source, "info", "setId", child(version, "id"));
+		appendInt(source, "info", "setMajor", child(version, "major"));
+		appendInt(source, "info", "setMinor", child(version, "minor"));
+		appendInt(source, "info", "setBuild", child(version, "build"));
+		appendInt(source, "info", "setRevision", child(version, "revision"));
+		appendString(source, "info", "setMaturity", child(version, "maturity"));
+
+		Element dependencies = child(version, "dependencies");
+		if (dependencies != null) {
+			NodeList children = dependencies.getChildNodes();
+			for (int i = 0; i < children.getLength(); i++) {
+				Node node = children.item(i);
+				if (node.getNodeType() != Node.ELEMENT_NODE || !"depends".equals(node.getNodeName())) {
+					continue;
+				}
+				Element depends = (Element) node;
+				source.append("\t\t{\n");
+				source.append("\t\t\t").append(DEPENDENCY).append(" dependency = new ").append(DEPENDENCY)
+						.append("();\n");
+				if (depends.hasAttribute("minVersion")) {
+					appendCall(source, "\t\t\tdependency", "setMinVersion", depends.getAttribute("minVersion"));
+				}
+				if (depends.hasAttribute("maxVersion")) {
+					appendCall(source, "\t\t\tdependency", "setMaxVersion", depends.getAttribute("maxVersion"));
+				}
+				appendCall(source, "\t\t\tdependency", "setName", depends.getTextContent());
+				source.append("\t\t\tinfo.getDependencies().add(dependency);\n");
+				source.append("\t\t}\n");
+			}
+		}
+
+		source.append("\t\treturn info;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		return source.toString();
+	}
+
+	private static Element child(final Element parent, final String name) {
+		NodeList children = parent.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			Node node = children.item(i);
+			if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName())) {
+				return (Element) node;
+			}
+		}
+		return null;
+	}
+
+	private static void appendString(final StringBuilder source, final String target, final String setter,
+			final Element element) {
+		if (element != null) {
+			appendCall(source, "\t\t" + target, setter, element.getTextContent());
+		}
+	}
+
+	private static void appendInt(final StringBuilder source, final String target, final String setter,
+			final Element element) {
+		if (element == null) {
+			return;
+		}
+		int value;
+		try {
+			value = Integer.parseInt(element.getTextContent().trim());
+		} catch (NumberFormatException e) {
+			value = 0;
+		}
+		source.append("\t\t").append(target).append('.').append(setter).append('(').append(value).append(");\n");
+	}
+
+	private static void appendCall(final StringBuilder source, final String target, final String setter,
+			final String value) {
+		source.append(target).append('.').append(setter).append("(\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				source.append("\\\"");
+				break;
+			case '\\':
+				source.append("\\\\");
+				break;
+			case '\n':
+				source.append("\\n");
+				break;
+			case '\r':
+				source.append("\\r");
+				break;
+			case '\t':
+				source.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					source.append(String.format("\\u%04x", (int) c));
+				} else {
+					source.append(c);
+				}
+			}
+		}
+		source.append("\");\n");
+	}
+}
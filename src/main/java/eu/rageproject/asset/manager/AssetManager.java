@@ -1,9 +1,25 @@
 package eu.rageproject.asset.manager;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -12,7 +28,13 @@ import java.util.regex.Pattern;
  * 
  * <strong>IMPLEMENTATION NOTE</strong>
  * 
- * This class is not thread-safe
+ * This class is thread-safe. Lookups are lock-free reads of a concurrent
+ * registry, identifiers are generated atomically and registrations are
+ * serialized so an asset is never registered twice.
+ * 
+ * Assets stay registered until they are unregistered, unless the registry is
+ * switched to weak mode (see {@link #setWeakRegistry(boolean)}). Once frozen
+ * (see {@link #freeze()}) the registry can no longer change.
  * 
  * @author Ivan Martinez-Ortiz
  *
@@ -21,52 +43,331 @@ public final class AssetManager {
 
 	public static final String LOGGER_KEY = "eu.rageproject.assetManager";
 
-	private static final Pattern CLASS_PATTERN = Pattern.compile("^([^_]+)_\\d+$");
-
 	private static final Logger log = Logger.getLogger(LOGGER_KEY);
 
-	private static AssetManager INSTANCE;
+	/**
+	 * Column widths of the {@link ReportFormat#TABLE} report.
+	 */
+	private static final int REPORT_ASSET_WIDTH = 40;
+
+	private static final int REPORT_DEPENDENCY_WIDTH = 32;
+
+	private static volatile AssetManager INSTANCE;
+
+	/**
+	 * Scope entered by the current thread, if any.
+	 */
+	private static final ThreadLocal<AssetManager> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Lazy asset being created by the current thread, if any.
+	 */
+	private static final ThreadLocal<PendingAsset> CREATING = new ThreadLocal<>();
 
+	/**
+	 * Gets the process-wide {@link AssetManager}.
+	 * 
+	 * @return the global asset manager.
+	 */
 	public static AssetManager getInstance() {
-		if (INSTANCE == null) {
-			AssetManager.INSTANCE = new AssetManager();
+		AssetManager instance = INSTANCE;
+		if (instance == null) {
+			synchronized (AssetManager.class) {
+				instance = INSTANCE;
+				if (instance == null) {
+					instance = new AssetManager(PubSubz.getInstance());
+					AssetManager.INSTANCE = instance;
+				}
+			}
 		}
-		return AssetManager.INSTANCE;
+		return instance;
 	}
 	
 	static void setInstance(final AssetManager instance) {
-		INSTANCE = instance;
+		synchronized (AssetManager.class) {
+			INSTANCE = instance;
+		}
+	}
+
+	/**
+	 * Creates an independent {@link AssetManager}.
+	 * 
+	 * <p>
+	 * A scope has its own registry, identifier sequence, bridge and
+	 * {@link PubSubz} event bus, so assets of different scopes never see each
+	 * other. Assets bind to a scope when they are constructed, either
+	 * explicitly or because the constructing thread has entered the scope (see
+	 * {@link #enter()}). Discarding a scope only requires dropping the
+	 * references to it and to its assets.
+	 * </p>
+	 * 
+	 * @return a new asset manager.
+	 */
+	public static AssetManager createScope() {
+		return new AssetManager(PubSubz.createInstance());
+	}
+
+	/**
+	 * Gets the {@link AssetManager} assets constructed by the current thread
+	 * bind to.
+	 * 
+	 * @return the scope entered by the current thread or the global asset
+	 *         manager if the thread has not entered any.
+	 */
+	public static AssetManager current() {
+		AssetManager scope = CURRENT.get();
+		return scope != null ? scope : getInstance();
 	}
 	
-	private int idGenerator;
+	private final AtomicInteger idGenerator;
+
+	/**
+	 * Registrations indexed by handle. Slots are written while holding
+	 * {@link #registrationLock} and the array is then re-published through
+	 * this volatile field, so lock-free readers always see the slots written
+	 * before their read of the field.
+	 */
+	private volatile Registration[] handles;
+
+	/**
+	 * Assets indexed by class name, in registration order.
+	 */
+	private final ConcurrentMap<String, AssetList> classIndex;
+
+	/**
+	 * Versioned assets indexed by class name, in version order.
+	 */
+	private final ConcurrentMap<String, VersionIndex> versionIndex;
+
+	/**
+	 * All assets, in registration order.
+	 */
+	private volatile AssetList allAssets;
+
+	/**
+	 * Snapshots returned by {@link #findAssetsByType(Class)}. The whole cache
+	 * is replaced by an empty one whenever the registry changes.
+	 */
+	private volatile ConcurrentMap<Class<?>, AssetList> typeCache;
+
+	/**
+	 * Reverse index used to detect re-registrations of the same instance,
+	 * keyed by identity hash code and chained through
+	 * {@link Registration#next}. Only accessed while holding
+	 * {@link #registrationLock}.
+	 */
+	private final Map<Integer, Registration> identities;
+
+	/**
+	 * Number of registrations compared by {@link #findRegistration(IAsset)}.
+	 * Only accessed while holding {@link #registrationLock}.
+	 */
+	private long identityProbes;
+
+	/**
+	 * Lazy assets not created yet, by reserved handle.
+	 */
+	private final ConcurrentMap<Integer, PendingAsset> pending;
+
+	/**
+	 * Receives the registrations of collected assets in weak registry mode.
+	 */
+	private final ReferenceQueue<IAsset> collected;
+
+	private volatile boolean weakRegistry;
+
+	/**
+	 * Read-only registry, once frozen.
+	 */
+	private volatile FrozenRegistry frozen;
+
+	/**
+	 * Guards registrations so the duplicate check and the insertion are atomic.
+	 */
+	private final Object registrationLock;
+
+	private volatile IBridge bridge;
 
-	private Map<String, IAsset> assets;
+	private final PubSubz pubSubz;
 
-	private IBridge bridge;
+	private final DependencyResolver dependencyResolver;
 
 	/**
 	 * Avoid manual instantiation
 	 */
-	private AssetManager() {
-		this.idGenerator = 0;
-		this.assets = new HashMap<>();
+	private AssetManager(final PubSubz pubSubz) {
+		this.pubSubz = pubSubz;
+		this.idGenerator = new AtomicInteger(0);
+		this.handles = new Registration[16];
+		this.classIndex = new ConcurrentHashMap<>();
+		this.versionIndex = new ConcurrentHashMap<>();
+		this.allAssets = AssetList.EMPTY;
+		this.typeCache = new ConcurrentHashMap<>();
+		this.identities = new HashMap<>();
+		this.pending = new ConcurrentHashMap<>();
+		this.collected = new ReferenceQueue<>();
+		this.weakRegistry = false;
+		this.registrationLock = new Object();
+		this.dependencyResolver = new DependencyResolver();
 		initEventSystem();
 	}
 
 	private void initEventSystem() {
-		PubSubz.getInstance().define("EventSystem.Init");
-		PubSubz.getInstance().publish("EventSystem.Init', 'hello event!");
+		this.pubSubz.define("EventSystem.Init");
+		this.pubSubz.publish("EventSystem.Init', 'hello event!");
 	}
 
+	/**
+	 * Gets the event bus of this asset manager.
+	 * 
+	 * @return {@link PubSubz#getInstance()} for the global asset manager, or
+	 *         the event bus of the scope.
+	 */
+	public PubSubz getPubSubz() {
+		return this.pubSubz;
+	}
+
+	/**
+	 * Gets the resolver of the dependencies between the assets of this asset
+	 * manager.
+	 * 
+	 * @return the dependency resolver.
+	 */
+	public DependencyResolver getDependencyResolver() {
+		return this.dependencyResolver;
+	}
+
+	/**
+	 * Binds this asset manager to the current thread, so assets the thread
+	 * constructs without an explicit {@link AssetManager} register with it.
+	 * 
+	 * <pre>
+	 * try (AssetManager.Scope scope = session.enter()) {
+	 * 	new Logger();
+	 * }
+	 * </pre>
+	 * 
+	 * @return the binding, which must be closed by the same thread to restore
+	 *         the previous one.
+	 */
+	public Scope enter() {
+		Scope scope = new Scope(CURRENT.get());
+		CURRENT.set(this);
+		return scope;
+	}
+
+	/**
+	 * Checks if the registry only holds weak references to the assets.
+	 * 
+	 * @return {@code true} if assets are weakly referenced, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isWeakRegistry() {
+		return this.weakRegistry;
+	}
+
+	/**
+	 * Selects if the registry holds weak or strong references to the assets.
+	 * 
+	 * <p>
+	 * In weak mode an asset that is no longer referenced outside the registry
+	 * is garbage collected and its registration purged on the next registry
+	 * access. Lookups returning several assets then build a new list on every
+	 * call, as the cached snapshots do not keep the assets alive.
+	 * </p>
+	 * 
+	 * @param weakRegistry
+	 *            {@code true} to weakly reference the assets.
+	 * 
+	 * @throws IllegalStateException
+	 *             if there are registered assets.
+	 */
+	public void setWeakRegistry(final boolean weakRegistry) {
+		synchronized (this.registrationLock) {
+			if (!this.allAssets.isEmpty() || this.frozen != null) {
+				throw new IllegalStateException("The registry mode cannot be changed once assets are registered");
+			}
+			this.weakRegistry = weakRegistry;
+		}
+	}
+
+	/**
+	 * Checks if the registry is frozen.
+	 * 
+	 * @return {@code true} if the registry is read-only, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isFrozen() {
+		return this.frozen != null;
+	}
+
+	/**
+	 * Freezes the registry into a read-only structure optimized for lookups.
+	 * 
+	 * <p>
+	 * Lazy assets are created first, then identifiers and class names are
+	 * indexed with minimal perfect hashes and the assets of each class are laid
+	 * out in dense slices of a single array. From then on lookups do not
+	 * synchronize or allocate, and registering, unregistering or adding
+	 * factories fails with an {@link IllegalStateException}.
+	 * </p>
+	 * 
+	 * @throws IllegalStateException
+	 *             if the registry is in weak mode.
+	 */
+	public void freeze() {
+		if (this.frozen != null) {
+			return;
+		}
+		if (this.weakRegistry) {
+			throw new IllegalStateException("A weak registry cannot be frozen");
+		}
+
+		createAllPending(null, IAsset.class);
+
+		synchronized (this.registrationLock) {
+			if (this.frozen == null) {
+				if (!this.pending.isEmpty()) {
+					throw new IllegalStateException("Asset factories were registered while freezing");
+				}
+				this.frozen = new FrozenRegistry(this.handles, this.allAssets);
+
+				log.info(String.format("Froze registry with %d Asset(s)", this.allAssets.size()));
+			}
+		}
+	}
+
+	private void checkNotFrozen() {
+		if (this.frozen != null) {
+			throw new IllegalStateException("The registry is frozen");
+		}
+	}
+
+	/**
+	 * Searches for the first registered <code>Asset</code> of a class.
+	 * 
+	 * @param clazz
+	 *            The class name the asset was registered with.
+	 * 
+	 * @return the first <code>Asset</code> registered or <code>null</code> if
+	 *         there is no asset of <code>clazz</code>.
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> T findAssetByClass(final String clazz) {
-		for (Map.Entry<String, IAsset> e : this.assets.entrySet()) {
-			Matcher m = CLASS_PATTERN.matcher(e.getKey());
-			if (m.matches() && m.group(1).equals(clazz)) {
-				return (T) e.getValue();
-			}
+		FrozenRegistry frozen = this.frozen;
+		if (frozen != null) {
+			List<IAsset> list = frozen.findAssetsByClass(clazz);
+			return list.isEmpty() ? null : (T) list.get(0);
+		}
+
+		expungeCollectedAssets();
+
+		AssetList list = this.classIndex.get(clazz);
+		IAsset asset = list == null ? null : list.first();
+		if (asset == null) {
+			asset = createFirstPending(clazz, null);
 		}
-		return null;
+		return (T) asset;
 	}
 
 	/**
@@ -79,301 +380,1269 @@ public final class AssetManager {
 	 *         <code>id</code> is not found.
 	 */
 	public IAsset findAssetById(final String id) {
-		return this.assets.get(id);
+		int handle = parseHandle(id);
+		if (handle == -1) {
+			return null;
+		}
+
+		FrozenRegistry frozen = this.frozen;
+		if (frozen != null) {
+			Registration registration = frozen.findRegistration(handle);
+			return registration != null && registration.hasId(id) ? registration.asset() : null;
+		}
+
+		expungeCollectedAssets();
+
+		Registration registration = registration(handle);
+		if (registration == null) {
+			PendingAsset lazy = this.pending.get(handle);
+			return lazy == null || !lazy.id.equals(id) ? null : lazy.create();
+		}
+		return registration.hasId(id) ? registration.asset() : null;
 	}
 
 	/**
-	 * Searches for assets by class.
+	 * Searches for an <code>Asset</code> by handle.
 	 * 
-	 * @param clazz
-	 *            The
-	 * @return
+	 * <p>
+	 * Handles are the numeric part of the asset identifiers, so this lookup is
+	 * a plain array access.
+	 * </p>
+	 * 
+	 * @param handle
+	 *            The asset handle.
+	 * 
+	 * @return return the <code>Asset</code> or <code>null</code> if the
+	 *         <code>handle</code> is not found.
+	 * 
+	 * @see #registerAssetHandle(IAsset, String)
 	 */
-	public Iterable<IAsset> findAssetsByClass(final String clazz) {
-		List<IAsset> results = new LinkedList<>();
-		for (Map.Entry<String, IAsset> e : this.assets.entrySet()) {
-			Matcher m = CLASS_PATTERN.matcher(e.getKey());
-			if (m.matches() && m.group(1).equals(clazz)) {
-				results.add(e.getValue());
-			}
+	public IAsset findAssetByHandle(final int handle) {
+		FrozenRegistry frozen = this.frozen;
+		if (frozen != null) {
+			Registration registration = frozen.findRegistration(handle);
+			return registration != null ? registration.asset() : null;
+		}
+
+		expungeCollectedAssets();
+
+		Registration registration = registration(handle);
+		if (registration == null) {
+			PendingAsset lazy = handle < 0 ? null : this.pending.get(handle);
+			return lazy == null ? null : lazy.create();
 		}
-		return results;
+		return registration.asset();
 	}
 
-	public String registerAssetInstance(final IAsset asset, final String clazz) {
-		for (Map.Entry<String, IAsset> e : assets.entrySet()) {
-			if (e.getValue() == asset) {
-				return e.getKey();
+	/**
+	 * Gets the identifier of the <code>Asset</code> with a handle. The
+	 * identifier is built the first time it is requested.
+	 * 
+	 * @param handle
+	 *            The asset handle.
+	 * 
+	 * @return the asset identifier or <code>null</code> if the
+	 *         <code>handle</code> is not found.
+	 */
+	public String getAssetId(final int handle) {
+		FrozenRegistry frozen = this.frozen;
+		Registration registration = frozen != null ? frozen.findRegistration(handle) : registration(handle);
+		return registration != null ? registration.id() : null;
+	}
+
+	private Registration registration(final int handle) {
+		Registration[] table = this.handles;
+		return handle >= 0 && handle < table.length ? table[handle] : null;
+	}
+
+	/**
+	 * Extracts the handle of an identifier without allocating.
+	 * 
+	 * @return the handle, or -1 if <code>id</code> is not an identifier.
+	 */
+	private static int parseHandle(final String id) {
+		if (id == null) {
+			return -1;
+		}
+		int separator = id.lastIndexOf('_');
+		int length = id.length();
+		if (separator == -1 || separator == length - 1 || length - separator > 10) {
+			return -1;
+		}
+		if (id.charAt(separator + 1) == '0' && separator + 2 < length) {
+			// leading zeros
+			return -1;
+		}
+		int handle = 0;
+		for (int i = separator + 1; i < length; i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
 			}
+			handle = handle * 10 + (c - '0');
 		}
+		return handle;
+	}
 
-		String id = String.format("%s_%d", clazz, idGenerator++);
+	/**
+	 * Searches for assets by class.
+	 * 
+	 * @param clazz
+	 *            The class name the assets were registered with.
+	 * 
+	 * @return an immutable snapshot of the assets of <code>clazz</code> in
+	 *         registration order. Later registrations are not reflected in the
+	 *         returned list.
+	 */
+	public List<IAsset> findAssetsByClass(final String clazz) {
+		FrozenRegistry frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.findAssetsByClass(clazz);
+		}
 
-		log.info(String.format("Registering Asset %s/%s as %s", asset.getClassName(), clazz, id));
+		expungeCollectedAssets();
+		createAllPending(clazz, null);
 
-		assets.put(id, asset);
+		AssetList list = this.classIndex.get(clazz);
+		if (list == null) {
+			return AssetList.EMPTY;
+		}
+		return snapshot(list);
+	}
 
-		log.finest(String.format("Registered %d Asset(s)", assets.size()));
+	/**
+	 * Searches for the first registered <code>Asset</code> of a type.
+	 * 
+	 * @param type
+	 *            The asset class, one of its super classes or an interface
+	 *            it implements.
+	 * 
+	 * @return the first <code>Asset</code> registered that is an instance of
+	 *         <code>type</code> or <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T findAssetByType(final Class<T> type) {
+		IAsset asset = typeSnapshot(type).first();
+		if (asset == null) {
+			asset = createFirstPending(null, type);
+		}
+		return (T) asset;
+	}
 
-		return id;
+	/**
+	 * Searches for assets by type.
+	 * 
+	 * <p>
+	 * The result is computed once per type and cached until the registry
+	 * changes.
+	 * </p>
+	 * 
+	 * @param type
+	 *            The asset class, one of its super classes or an interface
+	 *            they implement.
+	 * 
+	 * @return an immutable snapshot of the assets that are instances of
+	 *         <code>type</code> in registration order.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> findAssetsByType(final Class<T> type) {
+		createAllPending(null, type);
+		return (List<T>) snapshot(typeSnapshot(type));
 	}
 
-	public IBridge getBridge() {
-		return bridge;
+	/**
+	 * Searches for the newest registered <code>Asset</code> of a class within
+	 * a version range.
+	 * 
+	 * @param clazz
+	 *            The class name the asset was registered with.
+	 * @param range
+	 *            The version range, see {@link VersionRange}.
+	 * 
+	 * @return the <code>Asset</code> with the highest version within
+	 *         <code>range</code> or <code>null</code> if there is none. Among
+	 *         assets of the same version, the last registered one.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T findNewestCompatible(final String clazz, final String range) {
+		return (T) versionIndex(clazz).newest(VersionRange.parse(range));
 	}
 
-	public void setBridge(final IBridge bridge) {
-		this.bridge = bridge;
+	/**
+	 * Searches for the lowest registered <code>Asset</code> of a class within
+	 * a version range.
+	 * 
+	 * @param clazz
+	 *            The class name the asset was registered with.
+	 * @param range
+	 *            The version range, see {@link VersionRange}.
+	 * 
+	 * @return the <code>Asset</code> with the lowest version within
+	 *         <code>range</code> or <code>null</code> if there is none. Among
+	 *         assets of the same version, the first registered one.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T findLowestCompatible(final String clazz, final String range) {
+		return (T) versionIndex(clazz).lowest(VersionRange.parse(range));
 	}
 
 	/**
-	 * Reports version and dependencies.
+	 * Searches for the registered assets of a class within a version range.
 	 * 
-	 * @return The version and dependencies report.
+	 * @param clazz
+	 *            The class name the assets were registered with.
+	 * @param range
+	 *            The version range, see {@link VersionRange}.
+	 * 
+	 * @return an immutable snapshot of the assets of <code>clazz</code> within
+	 *         <code>range</code>, in increasing version order.
 	 */
-    public String getVersionAndDependenciesReport() {
-            int col1w = 40;
-            int col2w = 32;
-
-            StringBuilder report = new StringBuilder();
-
-            // Get system dependant end of line separators
-            String eol = System.getProperty("line.separator");
-            
-            report.append(padRight("Asset", col1w - "Asset".length()));
-            report.append(padRight("| Depends on", col2w)).append(eol);
-            report.append(padRight("", col1w, '-'));
-            report.append("+");
-            report.append(padRight("", col2w-1, '-')).append(eol);
-
-            for (Map.Entry<String, IAsset> e : this.assets.entrySet()) {
-            	IAsset asset = e.getValue();
-            	String artifact = String.format("%s v%s", asset.getClassName(), asset.getVersion());
-                report.append(padRight(artifact, col1w - artifact.length()));
-
-                int cnt = 0;
-                for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
-                    //! Better version matches (see Microsoft).
-                    // 
-                    //! https://msdn.microsoft.com/en-us/library/system.version(v=vs.110).aspx
-                    //
-                    //! dependency.value has min-max format (inclusive) like:
-                    // 
-                    //? v1.2.3-*        (v1.2.3 or higher)
-                    //? v0.0-*          (all versions)
-                    //? v1.2.3-v2.2     (v1.2.3 or higher less than or equal to v2.1)
-                    //
-                	String depencyVersion = dependency.getValue();
-                    String[] vrange = depencyVersion.split("-");
-
-                    Version low = null;
-
-                    Version hi = null;
-
-                    switch (vrange.length) {
-                        case 1:
-                            low = new Version(vrange[0]);
-                            hi = low;
-                            break;
-                        case 2:
-                            low = new Version(vrange[0]);
-                            if ("*".equals(vrange[1])) {
-                                hi = new Version(99, 99);
-                            } else {
-                                hi = new Version(vrange[1]);
-                            }
-                            break;
-
-                        default:
-                            break;
-                    }
-
-                    Boolean found = false;
-
-                    if (low != null) {
-                        for (IAsset dep : findAssetsByClass(dependency.getKey())) {
-                            Version vdep = new Version(dep.getVersion());
-                            if (low.compareTo(vdep) <= 0 && vdep.compareTo(hi) <= 0) {
-                                found = true;
-                                break;
-                            }
-                        }
-
-                        report.append(String.format("| %s v%s [%s]", dependency.getKey(), dependency.getValue(), found ? "resolved" : "missing")).append(eol);
-                    } else {
-                        report.append("error");
-                    }
-
-                    if (cnt != 0) {
-                        report.append(padRight("", col1w - 1));
-                    }
-
-                    cnt++;
-                }
-
-                if (cnt == 0) {
-                    report.append(String.format("| %s", "No dependencies")).append(eol);
-                }
-            }
-
-            report.append(padRight("", col1w, '-'));
-            report.append("+");
-            report.append(padRight("", col2w-1, '-')).append(eol);
-
-            return report.toString();
-    }
-
-	private String padRight(final String base, final int quantity) {
-		return padRight(base, quantity, ' ');
-	}
-
-	private String padRight(final String base, final int quantity, final char paddingChar) {
-		StringBuilder buffer = new StringBuilder(base.length() + quantity);
-		buffer.append(base);
-		for (int i = 0; i < quantity; i++) {
-			buffer.append(paddingChar);
+	public List<IAsset> findAllCompatible(final String clazz, final String range) {
+		return snapshot(versionIndex(clazz).all(VersionRange.parse(range)));
+	}
+
+	private VersionIndex versionIndex(final String clazz) {
+		if (this.frozen == null) {
+			expungeCollectedAssets();
+			createAllPending(clazz, null);
+		}
+		VersionIndex index = this.versionIndex.get(clazz);
+		return index != null ? index : VersionIndex.EMPTY;
+	}
+
+	private AssetList typeSnapshot(final Class<?> type) {
+		expungeCollectedAssets();
+
+		// Read the cache before the assets: a snapshot computed from stale
+		// assets can only be stored in a cache that has been discarded.
+		ConcurrentMap<Class<?>, AssetList> cache = this.typeCache;
+		AssetList cached = cache.get(type);
+		if (cached != null) {
+			return cached;
+		}
+
+		AssetList all = this.allAssets;
+		Registration[] matches = new Registration[all.size()];
+		int size = 0;
+		for (int i = 0; i < all.size(); i++) {
+			Registration registration = all.registration(i);
+			if (type.isInstance(registration.asset())) {
+				matches[size++] = registration;
+			}
 		}
 
-		return buffer.toString();
+		AssetList snapshot = size == 0 ? AssetList.EMPTY : new AssetList(Arrays.copyOf(matches, size), size);
+		cached = cache.putIfAbsent(type, snapshot);
+		return cached != null ? cached : snapshot;
+	}
+
+	private List<IAsset> snapshot(final AssetList list) {
+		return this.weakRegistry ? list.reachable() : list;
 	}
 
 	/**
-	 * Mimics required C#'s System.Version class functionality
+	 * Registers a factory that creates an asset the first time it is looked
+	 * up.
+	 * 
+	 * <p>
+	 * The identifier is reserved right away, and the asset is created by the
+	 * first {@link #findAssetById(String)} for that identifier or by the first
+	 * class or type lookup that matches <code>type</code>. The asset takes the
+	 * reserved identifier when it registers with the class name
+	 * <code>type.getSimpleName()</code>, like {@link BaseAsset} does.
+	 * </p>
+	 * 
+	 * @param type
+	 *            The class of the assets created by <code>factory</code>.
+	 * @param factory
+	 *            The asset factory.
 	 * 
-	 * @author Ivan Martinez-Ortiz
-	 *
+	 * @return the identifier reserved for the asset.
 	 */
-	private static class Version implements Comparable<Version> {
+	public <T extends IAsset> String registerAssetFactory(final Class<T> type, final IAssetFactory<? extends T> factory) {
+		synchronized (this.registrationLock) {
+			checkNotFrozen();
 
-		private final int major;
+			String clazz = type.getSimpleName();
+			int handle = idGenerator.getAndIncrement();
+			String id = formatId(clazz, handle);
 
-		private final int minor;
+			log.info(String.format("Registering Asset factory %s as %s", clazz, id));
 
-		private final int build;
+			this.pending.put(handle, new PendingAsset(id, handle, clazz, type, factory));
 
-		private final int revision;
-
-		@SuppressWarnings("unused")
-		public Version() {
-			this(0, 0, -1, -1);
+			return id;
 		}
+	}
 
-		public Version(final int major, final int minor) {
-			this(major, minor, -1, -1);
+	/**
+	 * Creates the lazy asset with the lowest identifier matching either
+	 * <code>clazz</code> or <code>type</code>.
+	 */
+	private IAsset createFirstPending(final String clazz, final Class<?> type) {
+		if (this.pending.isEmpty()) {
+			return null;
 		}
-
-		@SuppressWarnings("unused")
-		public Version(final int major, final int minor, final int build) {
-			this(major, minor, build, -1);
+		PendingAsset first = null;
+		for (PendingAsset lazy : this.pending.values()) {
+			if (lazy.matches(clazz, type) && (first == null || lazy.handle < first.handle)) {
+				first = lazy;
+			}
 		}
+		return first == null ? null : first.create();
+	}
 
-		public Version(final int major, final int minor, final int build, final int revision) {
-			this.major = major;
-			this.minor = minor;
-			this.build = build;
-			this.revision = revision;
+	/**
+	 * Creates all the lazy assets matching either <code>clazz</code> or
+	 * <code>type</code>.
+	 */
+	private void createAllPending(final String clazz, final Class<?> type) {
+		if (this.pending.isEmpty()) {
+			return;
 		}
-		
-		protected Version(final int[] version) {
-			this(version[0], version[1], version[2], version[3]);
+		for (PendingAsset lazy : this.pending.values()) {
+			if (lazy.matches(clazz, type)) {
+				lazy.create();
+			}
 		}
+	}
 
-		public Version(final String version) {
-    		this(doParse(version));
-    	}
+	public String registerAssetInstance(final IAsset asset, final String clazz) {
+		return register(asset, clazz).id();
+	}
 
-		private static final Pattern VERSION_PATTERN = Pattern.compile("^(\\d+)\\.(\\d+)(?:\\.(\\d+)(?:\\.(\\d+))?)?$");
-		
-		private static int[] doParse(final String version) {
-			int[] versionArray = new int[] {0, 0, -1, -1};
-			
-			Matcher m = VERSION_PATTERN.matcher(version);
-			if (m.matches()) {
-				versionArray[0] = Integer.parseInt(m.group(1), 10);
-				versionArray[1] = Integer.parseInt(m.group(2), 10);
-				if (m.groupCount() > 3 && m.group(3) != null) {
-					versionArray[2] = Integer.parseInt(m.group(3), 10);
-				}
-				if (m.groupCount() > 4 && m.group(4) != null) {
-					versionArray[3] = Integer.parseInt(m.group(4), 10);
-				}
+	/**
+	 * Registers an <code>Asset</code> and returns its handle instead of its
+	 * identifier, which is then only built if requested through
+	 * {@link #getAssetId(int)}.
+	 * 
+	 * @param asset
+	 *            The asset to register.
+	 * @param clazz
+	 *            The class name to register the asset with.
+	 * 
+	 * @return the asset handle. Re-registering an asset returns its original
+	 *         handle.
+	 */
+	public int registerAssetHandle(final IAsset asset, final String clazz) {
+		return register(asset, clazz).handle;
+	}
+
+	private Registration register(final IAsset asset, final String clazz) {
+		expungeCollectedAssets();
+
+		synchronized (this.registrationLock) {
+			Registration registered = findRegistration(asset);
+			if (registered != null) {
+				return registered;
 			}
-			return versionArray;
-		}
 
-		@SuppressWarnings("unused")
-		public static Version parse(final String version) {
-			return new Version(version);
-		}
+			checkNotFrozen();
 
-		/**
-		 * The components of Version in decreasing order of importance are:
-		 * major, minor, build, and revision. An unknown component is assumed to
-		 * be older than any known component. For example:
-		 * 
-		 * <ul>
-		 * <li>Version 1.1 is older than version 1.1.0.</li>
-		 * <li>Version 1.1 is older than version 1.1.1.</li>
-		 * <li>Version 1.1 is older than version 1.1.2.3.</li>
-		 * <li>Version 1.1.2 is older than version 1.1.2.4.</li>
-		 * <li>Version 1.2.5 is newer than version 1.2.3.4.</li>
-		 * 
-		 * @param v
-		 *            {@code Version} to compare to.
-		 * 
-		 * @return -1 if this {@code Version} is older than {@code v}, 0 if
-		 *         this {@code Version} is the same than {@code v} and 1 if this
-		 *         {@code Version} is newer than {@code v} or {@code v} is
-		 *         {@code null}.
-		 * @throws ClassCastException
-		 */
-		@Override
-		public int compareTo(final Version v) throws ClassCastException {
-			return -1;
-		}
+			int handle;
+			PendingAsset creating = CREATING.get();
+			if (creating != null && creating.owner() == this && creating.asset == null && creating.clazz.equals(clazz)) {
+				handle = creating.handle;
+				creating.asset = asset;
+			} else {
+				handle = idGenerator.getAndIncrement();
+			}
 
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + build;
-			result = prime * result + major;
-			result = prime * result + minor;
-			result = prime * result + revision;
-			return result;
-		}
+			if (log.isLoggable(Level.INFO)) {
+				log.info(String.format("Registering Asset %s/%s as %s", asset.getClassName(), clazz,
+						formatId(clazz, handle)));
+			}
 
-		@Override
-		public boolean equals(final Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Version other = (Version) obj;
-			if (build != other.build)
-				return false;
-			if (major != other.major)
-				return false;
-			if (minor != other.minor)
-				return false;
-			if (revision != other.revision)
+			Registration registration = new Registration(asset, handle, clazz, parseVersion(asset),
+					this.weakRegistry ? this.collected : null);
+
+			Registration[] table = handles;
+			if (handle >= table.length) {
+				table = Arrays.copyOf(table, Math.max(handle + 1, table.length * 2));
+			}
+			table[handle] = registration;
+			handles = table;
+
+			registration.next = identities.put(registration.identityHash, registration);
+
+			AssetList list = classIndex.get(clazz);
+			classIndex.put(clazz, list == null ? AssetList.EMPTY.append(registration) : list.append(registration));
+
+			if (registration.version != null) {
+				VersionIndex index = versionIndex.get(clazz);
+				versionIndex.put(clazz, (index == null ? VersionIndex.EMPTY : index).with(registration));
+			}
+
+			allAssets = allAssets.append(registration);
+			typeCache = new ConcurrentHashMap<>();
+
+			dependencyResolver.registered(clazz, registration.version);
+
+			if (log.isLoggable(Level.FINEST)) {
+				log.finest(String.format("Registered %d Asset(s)", allAssets.size()));
+			}
+
+			return registration;
+		}
+	}
+
+	private static String formatId(final String clazz, final int handle) {
+		return new StringBuilder(clazz.length() + 11).append(clazz).append('_').append(handle).toString();
+	}
+
+	/**
+	 * Parses the version of an asset. Versions whose components do not fit a
+	 * {@link Version} are ignored, so the asset is left out of version
+	 * lookups and dependency resolution instead of being taken for 0.0.
+	 */
+	private static Version parseVersion(final IAsset asset) {
+		String version = asset.getVersion();
+		if (version == null) {
+			return null;
+		}
+		try {
+			return Version.parse(version);
+		} catch (IllegalArgumentException e) {
+			log.warning(String.format("Ignoring version %s of Asset %s: %s", version, asset.getClassName(),
+					e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Removes an <code>Asset</code> from the registry.
+	 * 
+	 * @param asset
+	 *            The asset to unregister.
+	 * 
+	 * @return {@code true} if the asset was registered, {@code false}
+	 *         otherwise.
+	 */
+	public boolean unregisterAssetInstance(final IAsset asset) {
+		expungeCollectedAssets();
+
+		synchronized (this.registrationLock) {
+			Registration registration = findRegistration(asset);
+			if (registration == null) {
 				return false;
+			}
+
+			checkNotFrozen();
+
+			log.info(String.format("Unregistering Asset %s", registration.id()));
+
+			removeRegistrations(Collections.singleton(registration));
+
 			return true;
 		}
-		
+	}
+
+	/**
+	 * Purges the registrations of collected assets. Only does work in weak
+	 * registry mode.
+	 */
+	private void expungeCollectedAssets() {
+		Reference<? extends IAsset> reference = this.collected.poll();
+		if (reference == null) {
+			return;
+		}
+
+		synchronized (this.registrationLock) {
+			Set<Registration> registrations = new HashSet<>();
+			do {
+				registrations.add((Registration) reference);
+			} while ((reference = this.collected.poll()) != null);
+
+			if (log.isLoggable(Level.FINE)) {
+				log.fine(String.format("Purging %d collected Asset(s)", registrations.size()));
+			}
+
+			removeRegistrations(registrations);
+		}
+	}
+
+	/**
+	 * Must be called while holding {@link #registrationLock}.
+	 */
+	private Registration findRegistration(final IAsset asset) {
+		Registration registration = identities.get(System.identityHashCode(asset));
+		while (registration != null) {
+			identityProbes++;
+			if (registration.asset() == asset) {
+				break;
+			}
+			registration = registration.next;
+		}
+		return registration;
+	}
+
+	/**
+	 * Gets the number of registrations compared so far to detect
+	 * re-registrations, which only grows with the number of registered assets
+	 * if their identity hash codes collide.
+	 * 
+	 * @return the number of identity comparisons.
+	 */
+	long getIdentityProbeCount() {
+		synchronized (this.registrationLock) {
+			return this.identityProbes;
+		}
+	}
+
+	/**
+	 * Must be called while holding {@link #registrationLock}.
+	 */
+	private void removeRegistrations(final Set<Registration> registrations) {
+		Set<String> classes = new HashSet<>();
+		Registration[] table = handles;
+		for (Registration registration : registrations) {
+			if (table[registration.handle] != registration) {
+				// already removed
+				continue;
+			}
+			table[registration.handle] = null;
+			classes.add(registration.clazz);
+			dependencyResolver.unregistered(registration.clazz, registration.version);
+
+			Registration head = identities.get(registration.identityHash);
+			if (head == registration) {
+				if (registration.next == null) {
+					identities.remove(registration.identityHash);
+				} else {
+					identities.put(registration.identityHash, registration.next);
+				}
+			} else {
+				while (head.next != registration) {
+					head = head.next;
+				}
+				head.next = registration.next;
+			}
+		}
+
+		if (classes.isEmpty()) {
+			return;
+		}
+
+		for (String clazz : classes) {
+			AssetList list = classIndex.get(clazz).without(registrations);
+			if (list.isEmpty()) {
+				classIndex.remove(clazz);
+			} else {
+				classIndex.put(clazz, list);
+			}
+
+			VersionIndex index = versionIndex.get(clazz);
+			if (index != null) {
+				index = index.without(registrations);
+				if (index.isEmpty()) {
+					versionIndex.remove(clazz);
+				} else {
+					versionIndex.put(clazz, index);
+				}
+			}
+		}
+
+		handles = table;
+		allAssets = allAssets.without(registrations);
+		typeCache = new ConcurrentHashMap<>();
+	}
+
+	public IBridge getBridge() {
+		return bridge;
+	}
+
+	public void setBridge(final IBridge bridge) {
+		this.bridge = bridge;
+	}
+
+	/**
+	 * Reports version and dependencies.
+	 * 
+	 * @return The version and dependencies report.
+	 * 
+	 * @see #writeVersionAndDependenciesReport(Appendable, ReportFormat)
+	 */
+	public String getVersionAndDependenciesReport() {
+		StringBuilder report = new StringBuilder();
+		try {
+			writeVersionAndDependenciesReport(report, ReportFormat.TABLE);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Writes the version and dependencies report.
+	 * 
+	 * <p>
+	 * The report is written asset by asset straight to <code>out</code>, so
+	 * the memory used does not depend on the number of registered assets.
+	 * </p>
+	 * 
+	 * @param out
+	 *            Where to write the report, e.g. a {@link java.io.Writer}.
+	 * @param format
+	 *            The report format.
+	 * 
+	 * @throws IOException
+	 *             if <code>out</code> fails.
+	 */
+	public void writeVersionAndDependenciesReport(final Appendable out, final ReportFormat format)
+			throws IOException {
+		expungeCollectedAssets();
+
+		// Get system dependant end of line separators
+		String eol = System.getProperty("line.separator");
+
+		switch (format) {
+		case TABLE:
+			pad(out.append("Asset"), ' ', REPORT_ASSET_WIDTH - "Asset".length());
+			pad(out.append("| Depends on"), ' ', REPORT_DEPENDENCY_WIDTH - "| Depends on".length()).append(eol);
+			pad(pad(out, '-', REPORT_ASSET_WIDTH).append('+'), '-', REPORT_DEPENDENCY_WIDTH - 1).append(eol);
+			break;
+		case CSV:
+			out.append("Asset,Version,Depends on,Range,Status").append(eol);
+			break;
+		default:
+			break;
+		}
+
+		AssetList all = this.allAssets;
+		for (int i = 0; i < all.size(); i++) {
+			IAsset asset = all.registration(i).asset();
+			if (asset == null) {
+				continue;
+			}
+			switch (format) {
+			case TABLE:
+				writeTableRows(out, asset, eol);
+				break;
+			case JSON_LINES:
+				writeJsonLine(out, asset, eol);
+				break;
+			case CSV:
+				writeCsvRows(out, asset, eol);
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("Unsupported report format %s", format));
+			}
+		}
+
+		if (format == ReportFormat.TABLE) {
+			pad(pad(out, '-', REPORT_ASSET_WIDTH).append('+'), '-', REPORT_DEPENDENCY_WIDTH - 1).append(eol);
+		}
+	}
+
+	private void writeTableRows(final Appendable out, final IAsset asset, final String eol) throws IOException {
+		String className = asset.getClassName();
+		String version = asset.getVersion();
+		out.append(className).append(" v").append(version);
+		pad(out, ' ', REPORT_ASSET_WIDTH - className.length() - 2 - String.valueOf(version).length());
+
+		int cnt = 0;
+		for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
+			if (cnt != 0) {
+				pad(out, ' ', REPORT_ASSET_WIDTH);
+			}
+			out.append("| ").append(dependency.getKey()).append(" v").append(dependency.getValue());
+			out.append(" [").append(dependencyStatus(dependency)).append(']').append(eol);
+			cnt++;
+		}
+
+		if (cnt == 0) {
+			out.append("| No dependencies").append(eol);
+		}
+	}
+
+	private void writeJsonLine(final Appendable out, final IAsset asset, final String eol) throws IOException {
+		out.append("{\"asset\":");
+		appendJson(out, asset.getClassName());
+		out.append(",\"version\":");
+		appendJson(out, asset.getVersion());
+		out.append(",\"dependencies\":[");
+		boolean first = true;
+		for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
+			if (!first) {
+				out.append(',');
+			}
+			out.append("{\"class\":");
+			appendJson(out, dependency.getKey());
+			out.append(",\"range\":");
+			appendJson(out, dependency.getValue());
+			out.append(",\"status\":\"").append(dependencyStatus(dependency)).append("\"}");
+			first = false;
+		}
+		out.append("]}").append(eol);
+	}
+
+	private void writeCsvRows(final Appendable out, final IAsset asset, final String eol) throws IOException {
+		boolean empty = true;
+		for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
+			appendCsv(out, asset.getClassName()).append(',');
+			appendCsv(out, asset.getVersion()).append(',');
+			appendCsv(out, dependency.getKey()).append(',');
+			appendCsv(out, dependency.getValue()).append(',');
+			out.append(dependencyStatus(dependency)).append(eol);
+			empty = false;
+		}
+		if (empty) {
+			appendCsv(out, asset.getClassName()).append(',');
+			appendCsv(out, asset.getVersion()).append(",,,").append(eol);
+		}
+	}
+
+	private String dependencyStatus(final Map.Entry<String, String> dependency) {
+		if (!this.dependencyResolver.isValid(dependency.getKey(), dependency.getValue())) {
+			return "error";
+		}
+		return this.dependencyResolver.isResolved(dependency.getKey(), dependency.getValue()) ? "resolved" : "missing";
+	}
+
+	private static Appendable pad(final Appendable out, final char paddingChar, final int quantity)
+			throws IOException {
+		for (int i = 0; i < quantity; i++) {
+			out.append(paddingChar);
+		}
+		return out;
+	}
+
+	private static void appendJson(final Appendable out, final String value) throws IOException {
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+	private static Appendable appendCsv(final Appendable out, final String value) throws IOException {
+		if (value == null) {
+			return out;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			return out.append(value);
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				out.append('"');
+			}
+			out.append(c);
+		}
+		return out.append('"');
+	}
+
+	/**
+	 * Formats of the version and dependencies report.
+	 * 
+	 * @see AssetManager#writeVersionAndDependenciesReport(Appendable,
+	 *      ReportFormat)
+	 */
+	public enum ReportFormat {
+
+		/**
+		 * ASCII table, one line per dependency.
+		 */
+		TABLE,
+
+		/**
+		 * One JSON object per asset and line, with its class name, version
+		 * and dependencies.
+		 */
+		JSON_LINES,
+
+		/**
+		 * Comma separated values with a header row, one row per dependency.
+		 */
+		CSV
+	}
+
+	/**
+	 * Binding of an {@link AssetManager} to a thread.
+	 * 
+	 * @see AssetManager#enter()
+	 */
+	public static final class Scope implements Closeable {
+
+		private final AssetManager previous;
+
+		private Scope(final AssetManager previous) {
+			this.previous = previous;
+		}
+
+		/**
+		 * Restores the binding the thread had before entering the scope.
+		 */
 		@Override
-		public String toString() {
-			StringBuilder builder = new StringBuilder();
-			builder.append(this.major).append('.').append(this.minor);
-			if (this.build != -1) {
-				builder.append('.').append(this.build);
+		public void close() {
+			if (this.previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(this.previous);
 			}
-			if (this.revision != -1) {
-				builder.append('.').append(this.revision);
+		}
+	}
+
+	/**
+	 * Read-only registry built by {@link AssetManager#freeze()}. Identifiers
+	 * need no hashing, as their handle already indexes a dense array.
+	 */
+	private static final class FrozenRegistry {
+
+		/**
+		 * Registrations by handle.
+		 */
+		private final Registration[] handles;
+
+		private final PerfectHashIndex classes;
+
+		/**
+		 * Assets of each class by {@link #classes} slot, as slices of a single
+		 * array grouped by class.
+		 */
+		private final List<IAsset>[] slices;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		FrozenRegistry(final Registration[] handles, final AssetList all) {
+			this.handles = handles.clone();
+
+			int size = all.size();
+			Map<String, List<IAsset>> byClass = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				Registration registration = all.registration(i);
+				List<IAsset> list = byClass.get(registration.clazz);
+				if (list == null) {
+					list = new ArrayList<>();
+					byClass.put(registration.clazz, list);
+				}
+				list.add(registration.asset());
+			}
+
+			this.classes = PerfectHashIndex.build(byClass.keySet().toArray(new String[byClass.size()]));
+			this.slices = new List[this.classes.size()];
+			List<IAsset> dense = Arrays.asList(new IAsset[size]);
+			int start = 0;
+			for (Map.Entry<String, List<IAsset>> e : byClass.entrySet()) {
+				int end = start + e.getValue().size();
+				for (int i = start; i < end; i++) {
+					dense.set(i, e.getValue().get(i - start));
+				}
+				this.slices[this.classes.indexOf(e.getKey())] = Collections.unmodifiableList(dense.subList(start, end));
+				start = end;
+			}
+		}
+
+		Registration findRegistration(final int handle) {
+			return handle >= 0 && handle < this.handles.length ? this.handles[handle] : null;
+		}
+
+		List<IAsset> findAssetsByClass(final String clazz) {
+			int slot = this.classes.indexOf(clazz);
+			return slot == -1 ? AssetList.EMPTY : this.slices[slot];
+		}
+	}
+
+	/**
+	 * An asset whose creation is deferred until it is first looked up.
+	 */
+	private final class PendingAsset {
+
+		final String id;
+
+		final int handle;
+
+		final String clazz;
+
+		final Class<?> type;
+
+		private final IAssetFactory<?> factory;
+
+		/**
+		 * The created asset. Only accessed while holding this object's lock or
+		 * by the creating thread.
+		 */
+		IAsset asset;
+
+		PendingAsset(final String id, final int handle, final String clazz, final Class<?> type,
+				final IAssetFactory<?> factory) {
+			this.id = id;
+			this.handle = handle;
+			this.clazz = clazz;
+			this.type = type;
+			this.factory = factory;
+		}
+
+		AssetManager owner() {
+			return AssetManager.this;
+		}
+
+		boolean matches(final String clazz, final Class<?> type) {
+			return clazz != null ? this.clazz.equals(clazz) : type.isAssignableFrom(this.type);
+		}
+
+		/**
+		 * Creates the asset once. If the factory fails, an asset that already
+		 * registered itself is unregistered, so the creation can be retried.
+		 * 
+		 * @return the asset.
+		 */
+		synchronized IAsset create() {
+			if (this.asset == null) {
+				PendingAsset previous = CREATING.get();
+				CREATING.set(this);
+				Scope scope = enter();
+				boolean created = false;
+				try {
+					IAsset instance = this.factory.create();
+					if (instance == null) {
+						throw new IllegalStateException(String.format("Factory of %s returned null", this.id));
+					}
+					// assets not registering themselves get the reserved id
+					registerAssetInstance(instance, this.clazz);
+					this.asset = instance;
+					pending.remove(this.handle, this);
+					created = true;
+				} finally {
+					if (!created && this.asset != null) {
+						unregisterAssetInstance(this.asset);
+						this.asset = null;
+					}
+					scope.close();
+					if (previous == null) {
+						CREATING.remove();
+					} else {
+						CREATING.set(previous);
+					}
+				}
+			}
+			return this.asset;
+		}
+	}
+
+	/**
+	 * An asset registration.
+	 * <p>
+	 * Registrations always reference their asset weakly, and also strongly
+	 * unless the registry is in weak mode. When a weakly registered asset is
+	 * collected the registration is enqueued for purging.
+	 * </p>
+	 */
+	private static final class Registration extends WeakReference<IAsset> {
+
+		final int handle;
+
+		final String clazz;
+
+		/**
+		 * Version of the asset when it was registered, or {@code null} if
+		 * unknown.
+		 */
+		final Version version;
+
+		/**
+		 * Built on demand, see {@link #id()}.
+		 */
+		private String id;
+
+		final int identityHash;
+
+		private final IAsset asset;
+
+		/**
+		 * Next registration with the same identity hash code.
+		 */
+		Registration next;
+
+		Registration(final IAsset asset, final int handle, final String clazz, final Version version,
+				final ReferenceQueue<IAsset> queue) {
+			super(asset, queue);
+			this.handle = handle;
+			this.clazz = clazz;
+			this.version = version;
+			this.identityHash = System.identityHashCode(asset);
+			this.asset = queue == null ? asset : null;
+		}
+
+		IAsset asset() {
+			return this.asset != null ? this.asset : get();
+		}
+
+		String id() {
+			// racing threads build equal immutable strings
+			String id = this.id;
+			if (id == null) {
+				id = formatId(this.clazz, this.handle);
+				this.id = id;
+			}
+			return id;
+		}
+
+		/**
+		 * Checks the class name part of an identifier whose handle matches.
+		 */
+		boolean hasId(final String id) {
+			int length = this.clazz.length();
+			return id.length() > length && id.charAt(length) == '_' && id.regionMatches(0, this.clazz, 0, length)
+					&& id.lastIndexOf('_') == length;
+		}
+	}
+
+	/**
+	 * Immutable snapshot of registered assets.
+	 * <p>
+	 * Snapshots share an append-only backing array: a snapshot only ever reads
+	 * the first {@code size} slots, so appending to the array past that point
+	 * does not change what older snapshots see. Appending is amortized constant
+	 * time and must be done while holding the registration lock. Removals copy
+	 * the remaining registrations to a new array.
+	 * </p>
+	 */
+	private static final class AssetList extends AbstractList<IAsset> implements RandomAccess {
+
+		static final AssetList EMPTY = new AssetList(new Registration[0], 0);
+
+		private final Registration[] items;
+
+		private final int size;
+
+		private AssetList(final Registration[] items, final int size) {
+			this.items = items;
+			this.size = size;
+		}
+
+		AssetList append(final Registration registration) {
+			Registration[] target = this.items;
+			if (this.size == target.length) {
+				target = Arrays.copyOf(target, Math.max(4, this.size * 2));
+			}
+			target[this.size] = registration;
+			return new AssetList(target, this.size + 1);
+		}
+
+		AssetList without(final Set<Registration> registrations) {
+			Registration[] target = new Registration[this.size];
+			int count = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (!registrations.contains(this.items[i])) {
+					target[count++] = this.items[i];
+				}
+			}
+			return count == this.size ? this : new AssetList(target, count);
+		}
+
+		/**
+		 * Copies the assets that have not been collected.
+		 */
+		List<IAsset> reachable() {
+			IAsset[] target = new IAsset[this.size];
+			int count = 0;
+			for (int i = 0; i < this.size; i++) {
+				IAsset asset = this.items[i].asset();
+				if (asset != null) {
+					target[count++] = asset;
+				}
+			}
+			return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(target, count)));
+		}
+
+		IAsset first() {
+			for (int i = 0; i < this.size; i++) {
+				IAsset asset = this.items[i].asset();
+				if (asset != null) {
+					return asset;
+				}
+			}
+			return null;
+		}
+
+		Registration registration(final int index) {
+			return this.items[index];
+		}
+
+		@Override
+		public IAsset get(final int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			return this.items[index].asset();
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+	}
+
+	/**
+	 * Immutable, version-sorted snapshot of the versioned assets of a class.
+	 * <p>
+	 * Versions are kept packed (see {@link Version#toLong()}) in a primitive
+	 * array parallel to the registrations, so range queries are two binary
+	 * searches. Registrations with the same version keep their registration
+	 * order. As with {@link AssetList}, snapshots share append-only backing
+	 * arrays, so registering assets in non-decreasing version order is
+	 * amortized constant time; inserting before the end copies the arrays.
+	 * Updates must be done while holding the registration lock.
+	 * </p>
+	 */
+	private static final class VersionIndex {
+
+		static final VersionIndex EMPTY = new VersionIndex(new long[0], new Registration[0], 0);
+
+		private final long[] versions;
+
+		private final Registration[] items;
+
+		private final int size;
+
+		private VersionIndex(final long[] versions, final Registration[] items, final int size) {
+			this.versions = versions;
+			this.items = items;
+			this.size = size;
+		}
+
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		VersionIndex with(final Registration registration) {
+			long version = registration.version.toLong();
+			int position = upperBound(version);
+
+			long[] versions = this.versions;
+			Registration[] items = this.items;
+			if (position == this.size) {
+				if (this.size == items.length) {
+					int capacity = Math.max(4, this.size * 2);
+					versions = Arrays.copyOf(versions, capacity);
+					items = Arrays.copyOf(items, capacity);
+				}
+			} else {
+				int capacity = Math.max(4, this.size + 1);
+				versions = new long[capacity];
+				items = new Registration[capacity];
+				System.arraycopy(this.versions, 0, versions, 0, position);
+				System.arraycopy(this.items, 0, items, 0, position);
+				System.arraycopy(this.versions, position, versions, position + 1, this.size - position);
+				System.arraycopy(this.items, position, items, position + 1, this.size - position);
+			}
+			versions[position] = version;
+			items[position] = registration;
+			return new VersionIndex(versions, items, this.size + 1);
+		}
+
+		VersionIndex without(final Set<Registration> registrations) {
+			long[] versions = new long[this.size];
+			Registration[] items = new Registration[this.size];
+			int count = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (!registrations.contains(this.items[i])) {
+					versions[count] = this.versions[i];
+					items[count++] = this.items[i];
+				}
+			}
+			return count == this.size ? this : new VersionIndex(versions, items, count);
+		}
+
+		IAsset newest(final VersionRange range) {
+			int from = lowerBound(range.getLow());
+			for (int i = upperBound(range.getHigh()) - 1; i >= from; i--) {
+				IAsset asset = this.items[i].asset();
+				if (asset != null) {
+					return asset;
+				}
+			}
+			return null;
+		}
+
+		IAsset lowest(final VersionRange range) {
+			int to = upperBound(range.getHigh());
+			for (int i = lowerBound(range.getLow()); i < to; i++) {
+				IAsset asset = this.items[i].asset();
+				if (asset != null) {
+					return asset;
+				}
+			}
+			return null;
+		}
+
+		AssetList all(final VersionRange range) {
+			int from = lowerBound(range.getLow());
+			int to = upperBound(range.getHigh());
+			if (from >= to) {
+				return AssetList.EMPTY;
+			}
+			return new AssetList(Arrays.copyOfRange(this.items, from, to), to - from);
+		}
+
+		/**
+		 * @return the index of the first version greater than or equal to
+		 *         <code>version</code>.
+		 */
+		private int lowerBound(final long version) {
+			int low = 0;
+			int high = this.size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.versions[middle] < version) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return the index of the first version greater than
+		 *         <code>version</code>.
+		 */
+		private int upperBound(final long version) {
+			int low = 0;
+			int high = this.size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.versions[middle] <= version) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
 			}
-			return builder.toString();
+			return low;
 		}
 	}
 }
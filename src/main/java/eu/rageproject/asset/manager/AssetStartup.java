@@ -0,0 +1,373 @@
+package eu.rageproject.asset.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import eu.rageproject.asset.manager.RageVersionInfo.Dependency;
+
+/**
+ * Creates a set of assets in dependency order.
+ *
+ * <p>
+ * The dependencies of each asset are read from its version information (see
+ * {@link RageVersionInfo#getVersionInfo(Class)}) or given explicitly. An
+ * asset is only created once all the assets it depends on have been created,
+ * and assets that do not depend on each other are created concurrently on a
+ * {@link ForkJoinPool}. Dependencies on classes that are not part of the
+ * startup are assumed to be satisfied already.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is not thread-safe, a startup must be configured and started by
+ * a single thread.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public class AssetStartup {
+
+	private static final Logger log = Logger.getLogger(AssetManager.LOGGER_KEY);
+
+	private final AssetManager assetManager;
+
+	private final Map<String, Node> nodes;
+
+	/**
+	 * Initializes a startup that creates assets in {@code assetManager}.
+	 *
+	 * @param assetManager
+	 *            The asset manager (scope) the assets are created in.
+	 */
+	public AssetStartup(final AssetManager assetManager) {
+		this.assetManager = assetManager;
+		this.nodes = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Adds an asset whose dependencies are declared in its version
+	 * information.
+	 *
+	 * @param type
+	 *            The asset class.
+	 * @param factory
+	 *            The asset factory.
+	 *
+	 * @return this startup.
+	 */
+	public <T extends IAsset> AssetStartup add(final Class<T> type, final IAssetFactory<? extends T> factory) {
+		List<Dependency> dependencies = RageVersionInfo.getVersionInfo(type).getDependencies();
+		String[] dependsOn = new String[dependencies.size()];
+		int i = 0;
+		for (Dependency dependency : dependencies) {
+			dependsOn[i++] = dependency.getName().trim();
+		}
+		return add(type.getSimpleName(), factory, dependsOn);
+	}
+
+	/**
+	 * Adds an asset with explicit dependencies.
+	 *
+	 * @param clazz
+	 *            The asset class name.
+	 * @param factory
+	 *            The asset factory.
+	 * @param dependsOn
+	 *            The class names of the assets it depends on.
+	 *
+	 * @return this startup.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if an asset of {@code clazz} has already been added.
+	 */
+	public AssetStartup add(final String clazz, final IAssetFactory<?> factory, final String... dependsOn) {
+		if (this.nodes.containsKey(clazz)) {
+			throw new IllegalArgumentException(String.format("Asset %s already added", clazz));
+		}
+		this.nodes.put(clazz, new Node(clazz, factory, dependsOn));
+		return this;
+	}
+
+	/**
+	 * Creates the assets on a new {@link ForkJoinPool}, which is shut down
+	 * once the assets are created or the startup fails.
+	 *
+	 * @return the created assets, in a topological order.
+	 *
+	 * @see #start(ForkJoinPool)
+	 */
+	public List<IAsset> start() {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return start(pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Creates the assets on {@code pool}.
+	 *
+	 * @param pool
+	 *            The pool that creates the assets.
+	 *
+	 * @return the created assets, in a topological order.
+	 *
+	 * @throws IllegalStateException
+	 *             if the dependencies contain a cycle, in which case no asset
+	 *             is created.
+	 * @throws RuntimeException
+	 *             if an asset could not be created. Assets that do not depend
+	 *             on it may have been created; the ones being created when
+	 *             the failure happened are completed before this method
+	 *             returns, so no startup task is left running.
+	 * @throws Error
+	 *             thrown by a factory, unwrapped, after the running tasks
+	 *             have completed.
+	 */
+	public List<IAsset> start(final ForkJoinPool pool) {
+		List<Node> order = sort();
+
+		log.info(String.format("Starting %d Asset(s)", order.size()));
+
+		// Collect the roots before scheduling anything, running tasks
+		// schedule their dependents themselves.
+		List<Node> roots = new ArrayList<>();
+		for (Node node : order) {
+			if (node.remaining.get() == 0) {
+				roots.add(node);
+			}
+		}
+
+		Run run = new Run();
+		for (Node root : roots) {
+			run.schedule(pool, root);
+		}
+		run.await();
+
+		List<IAsset> assets = new ArrayList<>(order.size());
+		for (Node node : order) {
+			assets.add(node.asset);
+		}
+		return assets;
+	}
+
+	/**
+	 * Links the nodes and sorts them topologically (Kahn's algorithm).
+	 */
+	private List<Node> sort() {
+		for (Node node : this.nodes.values()) {
+			node.dependents.clear();
+			node.remaining.set(0);
+			node.asset = null;
+		}
+		for (Node node : this.nodes.values()) {
+			for (String name : node.dependsOn) {
+				Node dependency = this.nodes.get(name);
+				if (dependency != null) {
+					dependency.dependents.add(node);
+					node.remaining.incrementAndGet();
+				}
+			}
+		}
+
+		Map<Node, Integer> inDegree = new LinkedHashMap<>();
+		Queue<Node> ready = new LinkedList<>();
+		for (Node node : this.nodes.values()) {
+			inDegree.put(node, node.remaining.get());
+			if (node.remaining.get() == 0) {
+				ready.add(node);
+			}
+		}
+
+		List<Node> order = new ArrayList<>(this.nodes.size());
+		while (!ready.isEmpty()) {
+			Node node = ready.remove();
+			order.add(node);
+			for (Node dependent : node.dependents) {
+				int degree = inDegree.get(dependent) - 1;
+				inDegree.put(dependent, degree);
+				if (degree == 0) {
+					ready.add(dependent);
+				}
+			}
+		}
+
+		if (order.size() != this.nodes.size()) {
+			List<String> cycle = new ArrayList<>();
+			for (Map.Entry<Node, Integer> e : inDegree.entrySet()) {
+				if (e.getValue() > 0) {
+					cycle.add(e.getKey().clazz);
+				}
+			}
+			throw new IllegalStateException(String.format("Dependency cycle between assets %s", cycle));
+		}
+
+		return order;
+	}
+
+	/**
+	 * An asset to create.
+	 */
+	private static final class Node {
+
+		final String clazz;
+
+		final IAssetFactory<?> factory;
+
+		final List<String> dependsOn;
+
+		final List<Node> dependents;
+
+		/**
+		 * Dependencies not created yet.
+		 */
+		final AtomicInteger remaining;
+
+		volatile IAsset asset;
+
+		Node(final String clazz, final IAssetFactory<?> factory, final String[] dependsOn) {
+			this.clazz = clazz;
+			this.factory = factory;
+			this.dependsOn = Collections.unmodifiableList(Arrays.asList(dependsOn.clone()));
+			this.dependents = new ArrayList<>();
+			this.remaining = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Tracks the progress of a {@link AssetStartup#start(ForkJoinPool)} call.
+	 * A task only finishes after scheduling the dependents it made ready, so
+	 * the startup is over once no task is left, whether it failed or not.
+	 */
+	private final class Run {
+
+		/**
+		 * Tasks scheduled and not finished yet.
+		 */
+		private int running;
+
+		/**
+		 * The first failure, a {@link RuntimeException} or an {@link Error}.
+		 */
+		private Throwable failure;
+
+		void schedule(final ForkJoinPool pool, final Node node) {
+			synchronized (this) {
+				this.running++;
+			}
+			try {
+				pool.execute(new Task(pool, node, this));
+			} catch (RuntimeException e) {
+				failed(new RuntimeException(String.format("Failed to schedule asset %s", node.clazz), e));
+				finished();
+			}
+		}
+
+		synchronized void finished() {
+			this.running--;
+			notifyAll();
+		}
+
+		synchronized void failed(final Throwable failure) {
+			if (this.failure == null) {
+				this.failure = failure;
+			}
+		}
+
+		synchronized boolean isFailed() {
+			return this.failure != null;
+		}
+
+		/**
+		 * Waits until no task is left.
+		 *
+		 * @throws RuntimeException
+		 *             the first failure, if any.
+		 * @throws Error
+		 *             the first failure, if any.
+		 */
+		synchronized void await() {
+			boolean interrupted = false;
+			while (this.running > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (this.failure instanceof Error) {
+				throw (Error) this.failure;
+			}
+			if (this.failure != null) {
+				throw (RuntimeException) this.failure;
+			}
+		}
+	}
+
+	/**
+	 * Creates an asset and schedules the dependents that become ready.
+	 */
+	private final class Task implements Runnable {
+
+		private final ForkJoinPool pool;
+
+		private final Node node;
+
+		private final Run run;
+
+		Task(final ForkJoinPool pool, final Node node, final Run run) {
+			this.pool = pool;
+			this.node = node;
+			this.run = run;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!this.run.isFailed() && create()) {
+					for (Node dependent : this.node.dependents) {
+						if (dependent.remaining.decrementAndGet() == 0) {
+							this.run.schedule(this.pool, dependent);
+						}
+					}
+				}
+			} finally {
+				this.run.finished();
+			}
+		}
+
+		private boolean create() {
+			AssetManager.Scope scope = assetManager.enter();
+			try {
+				IAsset asset = this.node.factory.create();
+				if (asset == null) {
+					throw new IllegalStateException(String.format("Factory of %s returned null", this.node.clazz));
+				}
+				this.node.asset = asset;
+				return true;
+			} catch (RuntimeException e) {
+				this.run.failed(new RuntimeException(String.format("Failed to start asset %s", this.node.clazz), e));
+				return false;
+			} catch (Error e) {
+				// fatal errors are rethrown as they are
+				this.run.failed(e);
+				return false;
+			} finally {
+				scope.close();
+			}
+		}
+	}
+}
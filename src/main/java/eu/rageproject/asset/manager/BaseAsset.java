@@ -1,13 +1,21 @@
 package eu.rageproject.asset.manager;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.TreeMap;
-
-import javax.xml.bind.JAXB;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 
 import eu.rageproject.asset.manager.RageVersionInfo.Dependency;
 
@@ -18,38 +26,76 @@ import eu.rageproject.asset.manager.RageVersionInfo.Dependency;
  */
 public abstract class BaseAsset implements IAsset {
 
+	private final AssetManager assetManager;
+
+	private final int handle;
+
+	/**
+	 * Built on demand from {@link #handle}.
+	 */
 	private String id;
 
 	private IBridge bridge;
 
 	private RageVersionInfo versionInfo;
 
-	private ISettings settings;
+	/**
+	 * Current settings snapshot, replaced as a whole and read without locks.
+	 * It is published as is, not copied.
+	 */
+	private volatile ISettings settings;
 
-	protected BaseAsset() {
-		this.id = AssetManager.getInstance().registerAssetInstance(this, this.getClassName());
-		String xml = getVersionAndDependencies();
-		if (!"".equals(xml)) {
-			this.versionInfo = RageVersionInfo.loadVersionInfo(xml);
-		} else {
-			this.versionInfo = new RageVersionInfo();
-		}
+	/**
+	 * {@code null} to use {@link #settingsToXml()} and
+	 * {@link #settingsFromXml(String)}.
+	 */
+	private ISettingsCodec settingsCodec;
+
+	/**
+	 * Settings last saved to or loaded from each {@link IDataStorage} file.
+	 */
+	private final ConcurrentMap<String, PersistedSettings> persistedSettings;
+
+	/**
+	 * Serializes saves and reloads, so a reload triggered by a save in
+	 * progress finds the saved data already recorded and skips it.
+	 */
+	private final Object persistLock;
 
+	/**
+	 * Settings last saved or loaded as default settings.
+	 */
+	private volatile PersistedSettings persistedDefaultSettings;
+
+	/**
+	 * Initializes an asset registered with {@link AssetManager#current()}.
+	 */
+	protected BaseAsset() {
+		this(AssetManager.current());
 	}
 
 	/**
-	 * Version and dependencies file content.
+	 * Initializes an asset registered with {@code assetManager}.
+	 * 
+	 * @param assetManager
+	 *            The asset manager (scope) this asset belongs to.
 	 */
-	private String getVersionAndDependencies() {
-		// ! <package>.Resources.<AssetType>.VersionAndDependencies.xml
-		String xml = getEmbeddedResource(getClass().getPackage().getName(),
-				String.format("%s.VersionAndDependencies.xml", getClass().getSimpleName()));
-		return xml;
+	protected BaseAsset(final AssetManager assetManager) {
+		this.assetManager = assetManager;
+		this.persistedSettings = new ConcurrentHashMap<>();
+		this.persistLock = new Object();
+		this.versionInfo = RageVersionInfo.getVersionInfo(getClass());
+		// register last, the registry records the asset version
+		this.handle = assetManager.registerAssetHandle(this, this.getClassName());
 	}
 
 	/**
 	 * Gets embedded resource.
 	 * 
+	 * <p>
+	 * Resources are cached per asset class, see {@link ResourceLoader}.
+	 * </p>
+	 * 
 	 * @param pkg
 	 *            The package.
 	 * @param res
@@ -58,16 +104,7 @@ public abstract class BaseAsset implements IAsset {
 	 * @return The embedded resource.
 	 */
 	protected String getEmbeddedResource(final String pkg, final String res) {
-		String path = String.format("/%s/%s", pkg.replaceAll("\\.", "/"), res);
-
-		InputStream in = getClass().getResourceAsStream(path);
-		if (in != null) {
-			try (Scanner s = new Scanner(in)) {
-				return s.useDelimiter("\\Z").next();
-			}
-		}
-
-		return "";
+		return ResourceLoader.getInstance().getEmbeddedResource(getClass(), pkg, res);
 	}
 
 	public BaseAsset(final IBridge bridge) {
@@ -75,6 +112,31 @@ public abstract class BaseAsset implements IAsset {
 		this.bridge = bridge;
 	}
 
+	public BaseAsset(final AssetManager assetManager, final IBridge bridge) {
+		this(assetManager);
+		this.bridge = bridge;
+	}
+
+	/**
+	 * Gets the {@link AssetManager} this asset is registered with.
+	 * 
+	 * @return the asset manager.
+	 */
+	public AssetManager getAssetManager() {
+		return this.assetManager;
+	}
+
+	/**
+	 * Unregisters this asset from its {@link AssetManager}. Once closed the
+	 * asset can no longer be found through the {@link AssetManager}.
+	 */
+	@Override
+	public void close() {
+		// keep the identifier, it can no longer be built once unregistered
+		getId();
+		this.assetManager.unregisterAssetInstance(this);
+	}
+
 	@Override
 	public String getClassName() {
 		return getClass().getSimpleName();
@@ -82,7 +144,21 @@ public abstract class BaseAsset implements IAsset {
 
 	@Override
 	public String getId() {
-		return id;
+		if (this.id == null) {
+			this.id = this.assetManager.getAssetId(this.handle);
+		}
+		return this.id;
+	}
+
+	/**
+	 * Gets the handle of this asset in its {@link AssetManager}.
+	 * 
+	 * @return the asset handle.
+	 * 
+	 * @see AssetManager#findAssetByHandle(int)
+	 */
+	public int getHandle() {
+		return this.handle;
 	}
 
 	@Override
@@ -100,10 +176,34 @@ public abstract class BaseAsset implements IAsset {
 		return this.versionInfo.getMaturity();
 	}
 
+	/**
+	 * Gets the current settings snapshot.
+	 * 
+	 * <p>
+	 * Loading settings replaces the snapshot as a whole, so the object
+	 * returned stays consistent. To change the settings other threads see,
+	 * publish a modified copy with {@link #setSettings(ISettings)} instead of
+	 * modifying the current snapshot.
+	 * </p>
+	 * <p>
+	 * The snapshot is not copied nor made read-only: changes made to it in
+	 * place are neither safely published to other threads nor, unless it is
+	 * an {@link IVersionedSettings}, seen by {@link #SaveSettings(String)}.
+	 * </p>
+	 * 
+	 * @return the settings, {@code null} if the asset has no settings.
+	 */
 	public ISettings getSettings() {
-		return settings;
+		return this.settings;
 	}
 
+	/**
+	 * Replaces the settings snapshot.
+	 * 
+	 * @param settings
+	 *            The settings, published as is. They must not be modified
+	 *            once published, see {@link #getSettings()}.
+	 */
 	public void setSettings(final ISettings settings) {
 		this.settings = settings;
 	}
@@ -123,6 +223,14 @@ public abstract class BaseAsset implements IAsset {
 		return this.versionInfo.toString();
 	}
 
+	/**
+	 * Gets the version information of this asset, shared with all the assets
+	 * of its class.
+	 * 
+	 * @return the read-only version information.
+	 * 
+	 * @see RageVersionInfo#getVersionInfo(Class)
+	 */
 	public RageVersionInfo getVersionInfo() {
 		return this.versionInfo;
 	}
@@ -169,7 +277,7 @@ public abstract class BaseAsset implements IAsset {
 			return (T) this.bridge;
 		}
 
-		IBridge assetManagerBridge = AssetManager.getInstance().getBridge();
+		IBridge assetManagerBridge = this.assetManager.getBridge();
 		if (assetManagerBridge != null && adapter.isAssignableFrom(assetManagerBridge.getClass())) {
 			return (T) assetManagerBridge;
 		}
@@ -186,8 +294,11 @@ public abstract class BaseAsset implements IAsset {
 		IDefaultSettings ds = getInterface(IDefaultSettings.class);
 
 		if (ds != null && hasSettings() && ds.hasDefaultSettings(getClassName(), getId())) {
-			String xml = ds.loadDefaultSettings(getClassName(), getId());
-			this.settings = settingsFromXml(xml);
+			String data = ds.loadDefaultSettings(getClassName(), getId());
+			ISettings loaded = decodeSettings(data);
+			this.settings = loaded;
+			this.persistedDefaultSettings = new PersistedSettings(loaded, this.settingsCodec,
+					PersistedSettings.stamp(loaded), data);
 			return true;
 		}
 
@@ -195,7 +306,9 @@ public abstract class BaseAsset implements IAsset {
 	}
 
 	/**
-	 * Loads Settings object as Run-time Settings.
+	 * Loads Settings object as Run-time Settings. Waits for the asynchronous
+	 * saves of <code>filename</code> in progress, see
+	 * {@link #saveSettingsAsync(String)}.
 	 * 
 	 * @param filename
 	 *            Filename of the file.
@@ -205,18 +318,112 @@ public abstract class BaseAsset implements IAsset {
 	public Boolean loadSettings(final String filename) {
 		IDataStorage ds = getInterface(IDataStorage.class);
 
-		if (ds != null && hasSettings() && ds.exists(filename)) {
-			String xml = ds.load(filename);
-			this.settings = settingsFromXml(xml);
+		if (ds != null && hasSettings()) {
+			synchronized (this.persistLock) {
+				SettingsWriter.flushGlobal(ds, filename);
+				if (!ds.exists(filename)) {
+					return false;
+				}
+				PersistedSettings loaded = load(ds, filename);
+				this.settings = loaded.settings;
+				this.persistedSettings.put(filename, loaded);
+			}
 			return true;
 		}
 
 		return false;
 	}
 
+	/**
+	 * Loads Settings object as Run-time Settings if the stored settings have
+	 * changed since they were last saved to or loaded from
+	 * <code>filename</code> by this asset. Waits for the asynchronous saves of
+	 * <code>filename</code> in progress.
+	 * 
+	 * @param filename
+	 *            Filename of the file.
+	 * 
+	 * @return {@code true} if the settings were replaced, {@code false}
+	 *         otherwise.
+	 * 
+	 * @see #watchSettings(String)
+	 */
+	public Boolean reloadSettings(final String filename) {
+		IDataStorage ds = getInterface(IDataStorage.class);
+
+		if (ds != null && hasSettings()) {
+			synchronized (this.persistLock) {
+				SettingsWriter.flushGlobal(ds, filename);
+				if (!ds.exists(filename)) {
+					return false;
+				}
+				PersistedSettings last = this.persistedSettings.get(filename);
+				PersistedSettings loaded;
+				if (ds instanceof IStreamDataStorage) {
+					loaded = load(ds, filename);
+					if (last != null && last.hasSameData(loaded)) {
+						return false;
+					}
+				} else {
+					String data = ds.load(filename);
+					if (data == null) {
+						return false;
+					}
+					ISettingsCodec codec = this.settingsCodec;
+					// compared before decoding
+					if (last != null && last.hasSameData(new PersistedSettings(null, codec, 0, data))) {
+						return false;
+					}
+					ISettings settings = decodeSettings(data);
+					loaded = new PersistedSettings(settings, codec, PersistedSettings.stamp(settings), data);
+				}
+				this.settings = loaded.settings;
+				this.persistedSettings.put(filename, loaded);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reloads the settings whenever <code>filename</code> changes, see
+	 * {@link #reloadSettings(String)}. Requires an {@link IFileDataStorage}.
+	 * 
+	 * <p>
+	 * Readers are not blocked: reloaded settings replace the current snapshot
+	 * once they are fully decoded. Settings saved by this asset are not
+	 * reloaded, reloads wait for saves in progress and skip the data they
+	 * wrote.
+	 * </p>
+	 * 
+	 * @param filename
+	 *            Filename of the file.
+	 * 
+	 * @return a handle to stop watching the file or {@code null} if the data
+	 *         storage is not file-backed.
+	 * 
+	 * @throws IOException
+	 *             if the file directory cannot be watched.
+	 */
+	public Closeable watchSettings(final String filename) throws IOException {
+		IFileDataStorage ds = getInterface(IFileDataStorage.class);
+
+		if (ds != null) {
+			return SettingsWatcher.getInstance().watch(this, ds.resolve(filename), filename);
+		}
+
+		return null;
+	}
+
 	/**
 	 * Saves Settings object as Default (Design-time) Settings.
 	 * 
+	 * <p>
+	 * Settings that have not changed since they were last saved or loaded as
+	 * default settings are not saved again, see {@link #SaveSettings(String)}.
+	 * </p>
+	 * 
 	 * @param force
 	 *            Force to save settings even if the asset has default settings.
 	 * 
@@ -226,7 +433,18 @@ public abstract class BaseAsset implements IAsset {
 		IDefaultSettings ds = getInterface(IDefaultSettings.class);
 
 		if (ds != null && hasSettings() && (force || !ds.hasDefaultSettings(getClassName(), getId()))) {
-			ds.saveDefaultSettings(getClassName(), getId(), settingsToXml());
+			PersistedSettings last = this.persistedDefaultSettings;
+			ISettings current = this.settings;
+			ISettingsCodec codec = this.settingsCodec;
+			if (last == null || !last.isCurrent(current, codec)) {
+				long stamp = PersistedSettings.stamp(current);
+				String data = encodeSettings();
+				PersistedSettings saved = new PersistedSettings(current, codec, stamp, data);
+				if (last == null || !last.hasSameData(saved)) {
+					ds.saveDefaultSettings(getClassName(), getId(), data);
+				}
+				this.persistedDefaultSettings = saved;
+			}
 
 			return true;
 		}
@@ -237,8 +455,35 @@ public abstract class BaseAsset implements IAsset {
 	/**
 	 * Save asset's settings.
 	 * 
-	 * @param force
-	 *            Force to save settings even if the asset has default settings.
+	 * <p>
+	 * Saving is skipped when the settings have not changed since they were
+	 * last saved to or loaded from <code>filename</code> by this asset:
+	 * </p>
+	 * <ul>
+	 * <li>{@link IVersionedSettings} are not even serialized if they are the
+	 * same object, with the same modification stamp and codec.</li>
+	 * <li>Other settings are serialized, but not written if their serialized
+	 * form has the same hash as the one last saved or loaded.</li>
+	 * </ul>
+	 * <p>
+	 * Changes made to the storage by others are not detected, see
+	 * {@link #markSettingsDirty()}.
+	 * </p>
+	 * <p>
+	 * Settings are written straight into {@link IStreamDataStorage} files with
+	 * {@link #writeSettings(OutputStream)}, without building them as a
+	 * string. To be skipped, settings other than {@link IVersionedSettings}
+	 * are then serialized twice: once to hash them and, if they have changed,
+	 * once to write them.
+	 * </p>
+	 * <p>
+	 * Asynchronous saves of <code>filename</code> in progress are written
+	 * first, so they cannot overwrite this save, see
+	 * {@link #saveSettingsAsync(String)}.
+	 * </p>
+	 * 
+	 * @param filename
+	 *            Filename of the file.
 	 * 
 	 * @return {@code true} if it succeeds, {@code false} otherwise.
 	 */
@@ -246,7 +491,15 @@ public abstract class BaseAsset implements IAsset {
 		IDataStorage ds = getInterface(IDataStorage.class);
 
 		if (ds != null && hasSettings()) {
-			ds.save(filename, settingsToXml());
+			synchronized (this.persistLock) {
+				SettingsWriter.flushGlobal(ds, filename);
+				PersistedSettings last = this.persistedSettings.get(filename);
+				ISettings current = this.settings;
+				ISettingsCodec codec = this.settingsCodec;
+				if (last == null || !last.isCurrent(current, codec)) {
+					this.persistedSettings.put(filename, save(ds, filename, current, codec, last));
+				}
+			}
 
 			return true;
 		}
@@ -254,6 +507,256 @@ public abstract class BaseAsset implements IAsset {
 		return false;
 	}
 
+	/**
+	 * Save asset's settings on the {@link SettingsWriter} thread.
+	 *
+	 * <p>
+	 * Settings are serialized on the caller's thread, so they can be changed
+	 * once this method returns. Saves of the same <code>filename</code> still
+	 * queued are replaced by this one. Unchanged settings are skipped as in
+	 * {@link #SaveSettings(String)}. Later synchronous saves and loads of
+	 * <code>filename</code> wait for this one to be written.
+	 * </p>
+	 *
+	 * @param filename
+	 *            Filename of the file.
+	 *
+	 * @return a future of {@code true} once the settings are written or if
+	 *         they have not changed, {@code false} if there is no storage or
+	 *         settings. It fails if the storage fails.
+	 *
+	 * @throws java.util.concurrent.RejectedExecutionException
+	 *             if the settings writer has been shut down.
+	 */
+	public Future<Boolean> saveSettingsAsync(final String filename) {
+		IDataStorage ds = getInterface(IDataStorage.class);
+
+		if (ds != null && hasSettings()) {
+			synchronized (this.persistLock) {
+				PersistedSettings last = this.persistedSettings.get(filename);
+				ISettings current = this.settings;
+				ISettingsCodec codec = this.settingsCodec;
+				if (last == null || !last.isCurrent(current, codec)) {
+					long stamp = PersistedSettings.stamp(current);
+					Object data;
+					final PersistedSettings saved;
+					if (ds instanceof IStreamDataStorage) {
+						BufferOutputStream buffer = new BufferOutputStream();
+						DigestOutputStream digest = new DigestOutputStream(buffer);
+						try {
+							writeSettings(digest);
+						} catch (IOException e) {
+							throw new IllegalStateException(String.format("Unable to save settings %s", filename),
+									e);
+						}
+						data = buffer.toByteBuffer();
+						saved = new PersistedSettings(current, codec, stamp, digest.length, digest.hash);
+					} else {
+						String text = encodeSettings();
+						data = text;
+						saved = new PersistedSettings(current, codec, stamp, text);
+					}
+					if (last == null || !last.hasSameData(saved)) {
+						// recorded now so unchanged saves are skipped while queued, forgotten if the write fails
+						this.persistedSettings.put(filename, saved);
+						return SettingsWriter.getInstance().save(ds, filename, data, new Runnable() {
+							@Override
+							public void run() {
+								persistedSettings.remove(filename, saved);
+							}
+						});
+					}
+					this.persistedSettings.put(filename, saved);
+				}
+			}
+
+			return SettingsWriter.completed(true);
+		}
+
+		return SettingsWriter.completed(false);
+	}
+
+	/**
+	 * Loads settings from a storage file.
+	 */
+	private PersistedSettings load(final IDataStorage ds, final String filename) {
+		ISettingsCodec codec = this.settingsCodec;
+		if (ds instanceof IStreamDataStorage) {
+			try (InputStream file = ((IStreamDataStorage) ds).openRead(filename)) {
+				DigestInputStream in = new DigestInputStream(file);
+				ISettings loaded = readSettings(in);
+				// hash the whole file, even if the codec did not read all of it
+				in.skipRemaining();
+				return new PersistedSettings(loaded, codec, PersistedSettings.stamp(loaded), in.length, in.hash);
+			} catch (IOException e) {
+				throw new IllegalStateException(String.format("Unable to load settings %s", filename), e);
+			}
+		}
+		String data = ds.load(filename);
+		ISettings loaded = decodeSettings(data);
+		return new PersistedSettings(loaded, codec, PersistedSettings.stamp(loaded), data);
+	}
+
+	/**
+	 * Saves settings to a storage file, unless they have the same data as
+	 * <code>last</code>.
+	 */
+	private PersistedSettings save(final IDataStorage ds, final String filename, final ISettings current,
+			final ISettingsCodec codec, final PersistedSettings last) {
+		long stamp = PersistedSettings.stamp(current);
+		if (ds instanceof IStreamDataStorage) {
+			try {
+				if (last != null && !(current instanceof IVersionedSettings)) {
+					DigestOutputStream digest = new DigestOutputStream(null);
+					writeSettings(digest);
+					PersistedSettings saved = new PersistedSettings(current, codec, stamp, digest.length, digest.hash);
+					if (last.hasSameData(saved)) {
+						return saved;
+					}
+				}
+				try (OutputStream out = ((IStreamDataStorage) ds).openWrite(filename)) {
+					DigestOutputStream digest = new DigestOutputStream(out);
+					writeSettings(digest);
+					return new PersistedSettings(current, codec, stamp, digest.length, digest.hash);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(String.format("Unable to save settings %s", filename), e);
+			}
+		}
+		String data = encodeSettings();
+		PersistedSettings saved = new PersistedSettings(current, codec, stamp, data);
+		if (last == null || !last.hasSameData(saved)) {
+			ds.save(filename, data);
+		}
+		return saved;
+	}
+
+	/**
+	 * Forgets which settings were last saved and loaded, so the next saves
+	 * write the settings even if they have not changed. Must be called when
+	 * the stored settings are changed by others.
+	 */
+	public void markSettingsDirty() {
+		this.persistedSettings.clear();
+		this.persistedDefaultSettings = null;
+	}
+
+	/**
+	 * Gets the codec settings are stored with.
+	 * 
+	 * @return the settings codec, {@code null} if settings are stored as XML
+	 *         (see {@link #settingsToXml()}).
+	 */
+	public ISettingsCodec getSettingsCodec() {
+		return this.settingsCodec;
+	}
+
+	/**
+	 * Selects the codec settings are stored with, for example
+	 * {@link BinarySettingsCodec}. Settings stored with another codec can no
+	 * longer be loaded.
+	 * 
+	 * @param settingsCodec
+	 *            The settings codec, {@code null} to store settings as XML.
+	 */
+	public void setSettingsCodec(final ISettingsCodec settingsCodec) {
+		this.settingsCodec = settingsCodec;
+	}
+
+	/**
+	 * Encodes the settings with the settings codec.
+	 * 
+	 * @return the encoded settings.
+	 */
+	protected String encodeSettings() {
+		ISettingsCodec codec = this.settingsCodec;
+		return codec == null ? settingsToXml() : codec.encode(this.settings);
+	}
+
+	/**
+	 * Decodes settings with the settings codec.
+	 * 
+	 * @param data
+	 *            The encoded settings.
+	 * 
+	 * @return a {@link ISettings} object implementation of the same class as
+	 *         the current settings.
+	 */
+	protected ISettings decodeSettings(final String data) {
+		ISettingsCodec codec = this.settingsCodec;
+		return codec == null ? settingsFromXml(data) : codec.decode(data, this.settings.getClass());
+	}
+
+	/**
+	 * Whether an asset class overrides {@link #settingsToXml()} or
+	 * {@link #settingsFromXml(String)}, in which case its XML settings are
+	 * not streamed with {@link XmlSettingsCodec}.
+	 */
+	private static final ClassValue<Boolean> CUSTOM_XML = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			for (Class<?> c = type; c != BaseAsset.class; c = c.getSuperclass()) {
+				for (Method method : c.getDeclaredMethods()) {
+					Class<?>[] parameters = method.getParameterTypes();
+					if ((method.getName().equals("settingsToXml") && parameters.length == 0)
+							|| (method.getName().equals("settingsFromXml") && parameters.length == 1
+									&& parameters[0] == String.class)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Encodes the settings with the settings codec into a stream. Without
+	 * codec, settings are written as XML by {@link XmlSettingsCodec}, or with
+	 * {@link #settingsToXml()} if it is overridden.
+	 * 
+	 * @param out
+	 *            The stream, not closed.
+	 * 
+	 * @throws IOException
+	 *             if writing to <code>out</code> fails.
+	 */
+	protected void writeSettings(final OutputStream out) throws IOException {
+		ISettingsCodec codec = this.settingsCodec;
+		if (codec == null && CUSTOM_XML.get(getClass())) {
+			out.write(settingsToXml().getBytes(StandardCharsets.UTF_8));
+		} else {
+			(codec == null ? XmlSettingsCodec.getInstance() : codec).write(this.settings, out);
+		}
+	}
+
+	/**
+	 * Decodes settings with the settings codec from a stream. Without codec,
+	 * settings are read as XML by {@link XmlSettingsCodec}, or with
+	 * {@link #settingsFromXml(String)} if it is overridden.
+	 * 
+	 * @param in
+	 *            The stream, not closed.
+	 * 
+	 * @return a {@link ISettings} object implementation of the same class as
+	 *         the current settings.
+	 * 
+	 * @throws IOException
+	 *             if reading from <code>in</code> fails.
+	 */
+	protected ISettings readSettings(final InputStream in) throws IOException {
+		ISettingsCodec codec = this.settingsCodec;
+		if (codec == null && CUSTOM_XML.get(getClass())) {
+			Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+			StringBuilder xml = new StringBuilder();
+			char[] chars = new char[4096];
+			for (int read = reader.read(chars); read >= 0; read = reader.read(chars)) {
+				xml.append(chars, 0, read);
+			}
+			return settingsFromXml(xml.toString());
+		}
+		return (codec == null ? XmlSettingsCodec.getInstance() : codec).read(in, this.settings.getClass());
+	}
+
 	/**
 	 * 
 	 * <strong>IMPLEMENTATION NOTE</strong>
@@ -267,7 +770,7 @@ public abstract class BaseAsset implements IAsset {
 	 * @return a {@link ISettings} object implementation. 
 	 */
 	protected ISettings settingsFromXml(final String xml) {
-		return JAXB.unmarshal(new StringReader(xml), this.settings.getClass());
+		return SettingsSerializer.getInstance().fromXml(xml, this.settings.getClass());
 	}
 
 	/**
@@ -281,9 +784,191 @@ public abstract class BaseAsset implements IAsset {
 	 * @return Xml representation.
 	 */
 	protected String settingsToXml() {
-		StringWriter writer = new StringWriter();
-		JAXB.marshal(this.settings, writer);
-		return writer.toString();
+		return SettingsSerializer.getInstance().toXml(this.settings);
+	}
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Settings as they were last saved or loaded.
+	 */
+	private static final class PersistedSettings {
+
+		private final ISettings settings;
+
+		private final ISettingsCodec codec;
+
+		/**
+		 * Modification stamp of {@link IVersionedSettings}, read before they
+		 * were serialized.
+		 */
+		private final long stamp;
+
+		/**
+		 * Number of characters of string data or bytes of stream data.
+		 */
+		private final long length;
+
+		private final long hash;
+
+		PersistedSettings(final ISettings settings, final ISettingsCodec codec, final long stamp, final String data) {
+			this(settings, codec, stamp, data.length(), hash(data));
+		}
+
+		PersistedSettings(final ISettings settings, final ISettingsCodec codec, final long stamp, final long length,
+				final long hash) {
+			this.settings = settings;
+			this.codec = codec;
+			this.stamp = stamp;
+			this.length = length;
+			this.hash = hash;
+		}
+
+		static long stamp(final ISettings settings) {
+			return settings instanceof IVersionedSettings ? ((IVersionedSettings) settings).getModificationStamp() : 0;
+		}
+
+		/**
+		 * 64 bit FNV-1a hash of the characters of a string.
+		 */
+		private static long hash(final String data) {
+			long hash = FNV_OFFSET_BASIS;
+			for (int i = 0; i < data.length(); i++) {
+				hash ^= data.charAt(i);
+				hash *= FNV_PRIME;
+			}
+			return hash;
+		}
+
+		/**
+		 * Checks, without serializing them, if settings are unchanged.
+		 */
+		boolean isCurrent(final ISettings settings, final ISettingsCodec codec) {
+			return settings == this.settings && codec == this.codec && settings instanceof IVersionedSettings
+					&& stamp(settings) == this.stamp;
+		}
+
+		boolean hasSameData(final PersistedSettings other) {
+			return this.codec == other.codec && this.length == other.length && this.hash == other.hash;
+		}
 	}
 
+	/**
+	 * Hashes (64 bit FNV-1a) and counts the bytes written, optionally passing
+	 * them on to another stream.
+	 */
+	private static final class DigestOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		long length;
+
+		long hash = FNV_OFFSET_BASIS;
+
+		DigestOutputStream(final OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			this.hash = (this.hash ^ (b & 0xff)) * FNV_PRIME;
+			this.length++;
+			if (this.out != null) {
+				this.out.write(b);
+			}
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			long hash = this.hash;
+			for (int i = off; i < off + len; i++) {
+				hash = (hash ^ (b[i] & 0xff)) * FNV_PRIME;
+			}
+			this.hash = hash;
+			this.length += len;
+			if (this.out != null) {
+				this.out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.out != null) {
+				this.out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Hashes (64 bit FNV-1a) and counts the bytes read.
+	 */
+	private static final class DigestInputStream extends FilterInputStream {
+
+		long length;
+
+		long hash = FNV_OFFSET_BASIS;
+
+		DigestInputStream(final InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				this.hash = (this.hash ^ b) * FNV_PRIME;
+				this.length++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			int read = super.read(b, off, len);
+			long hash = this.hash;
+			for (int i = off; i < off + read; i++) {
+				hash = (hash ^ (b[i] & 0xff)) * FNV_PRIME;
+			}
+			this.hash = hash;
+			this.length += Math.max(read, 0);
+			return read;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			// skipped bytes must be hashed too
+			byte[] skipped = new byte[(int) Math.min(n, 4096)];
+			int read = read(skipped, 0, skipped.length);
+			return Math.max(read, 0);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+			// closed by its owner, once hashed
+		}
+
+		void skipRemaining() throws IOException {
+			byte[] skipped = new byte[4096];
+			while (read(skipped, 0, skipped.length) >= 0) {
+				// hashed by read
+			}
+		}
+	}
+
+	/**
+	 * Byte array stream whose content can be wrapped without copying it.
+	 */
+	private static final class BufferOutputStream extends ByteArrayOutputStream {
+
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(this.buf, 0, this.count);
+		}
+	}
 }
@@ -0,0 +1,676 @@
+package eu.rageproject.asset.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Encodes settings in a compact binary format.
+ *
+ * <p>
+ * The fields of a settings class (including inherited ones, excluding static
+ * and transient ones) are written in a fixed order, without names or tags:
+ * integers as variable length zig-zag numbers, floating point numbers as
+ * their IEEE 754 bits and strings as length prefixed UTF-8. Supported field
+ * types are primitives and their wrappers, {@link String}, enums,
+ * <code>byte[]</code>, {@link List}, {@link Set} and {@link Collection} of
+ * supported types, and nested objects with a no-arg constructor whose fields
+ * are supported.
+ * </p>
+ *
+ * <p>
+ * Each encoding starts with a format byte and a signature of the field
+ * layout, so data written for a different version of a settings class is
+ * rejected instead of misread. Truncated or corrupt data fails to read
+ * instead of being allocated for. The textual form used by
+ * {@link #encode(ISettings)} is base64.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * Fields are discovered and made accessible once per class, and each field
+ * gets a dedicated accessor, so primitive fields are read and written without
+ * boxing. This class is thread-safe.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class BinarySettingsCodec implements ISettingsCodec {
+
+	private static final int FORMAT = 1;
+
+	/**
+	 * Largest number of bytes allocated for a length prefixed value before
+	 * they are read, so a corrupt length fails to read instead of exhausting
+	 * the heap.
+	 */
+	private static final int MAX_PREALLOCATED_BYTES = 64 * 1024;
+
+	/**
+	 * Largest number of elements a collection is presized for.
+	 */
+	private static final int MAX_PREALLOCATED_ELEMENTS = 1024;
+
+	private static final BinarySettingsCodec INSTANCE = new BinarySettingsCodec();
+
+	/**
+	 * Gets the binary codec.
+	 *
+	 * @return the codec.
+	 */
+	public static BinarySettingsCodec getInstance() {
+		return INSTANCE;
+	}
+
+	private final ClassValue<Layout> layouts;
+
+	private BinarySettingsCodec() {
+		this.layouts = new ClassValue<Layout>() {
+			@Override
+			protected Layout computeValue(final Class<?> type) {
+				return new Layout(type);
+			}
+		};
+	}
+
+	@Override
+	public String encode(final ISettings settings) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			write(settings, buffer);
+		} catch (IOException e) {
+			// ByteArrayOutputStream does not throw
+			throw new IllegalStateException(e);
+		}
+		return DatatypeConverter.printBase64Binary(buffer.toByteArray());
+	}
+
+	@Override
+	public <T extends ISettings> T decode(final String data, final Class<T> type) {
+		try {
+			return read(new ByteArrayInputStream(DatatypeConverter.parseBase64Binary(data)), type);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(String.format("Invalid %s data", type.getSimpleName()), e);
+		}
+	}
+
+	@Override
+	public void write(final ISettings settings, final OutputStream out) throws IOException {
+		Layout layout = this.layouts.get(settings.getClass());
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeByte(FORMAT);
+		data.writeInt(layout.signature());
+		layout.write(settings, data);
+		data.flush();
+	}
+
+	@Override
+	public <T extends ISettings> T read(final InputStream in, final Class<T> type) throws IOException {
+		Layout layout = this.layouts.get(type);
+		DataInputStream data = new DataInputStream(in);
+		int format = data.readUnsignedByte();
+		if (format != FORMAT) {
+			throw new IOException(String.format("Unsupported settings format %d", format));
+		}
+		if (data.readInt() != layout.signature()) {
+			throw new IOException(String.format("Settings were written by another version of %s", type.getName()));
+		}
+		return type.cast(layout.read(data));
+	}
+
+	/**
+	 * Fields of a class and their accessors.
+	 */
+	private final class Layout {
+
+		private final Class<?> type;
+
+		private final Constructor<?> constructor;
+
+		private final FieldAccessor[] accessors;
+
+		private final String descriptor;
+
+		/**
+		 * Computed on first use, nested layouts may not be built yet when
+		 * this one is.
+		 */
+		private volatile Integer signature;
+
+		Layout(final Class<?> type) {
+			this.type = type;
+			try {
+				this.constructor = type.getDeclaredConstructor();
+				this.constructor.setAccessible(true);
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException(String.format("%s has no no-arg constructor", type.getName()), e);
+			}
+
+			List<Field> fields = new ArrayList<>();
+			List<Class<?>> hierarchy = new ArrayList<>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				hierarchy.add(0, c);
+			}
+			for (Class<?> c : hierarchy) {
+				Field[] declared = c.getDeclaredFields();
+				Arrays.sort(declared, new Comparator<Field>() {
+					@Override
+					public int compare(final Field a, final Field b) {
+						return a.getName().compareTo(b.getName());
+					}
+				});
+				for (Field field : declared) {
+					int modifiers = field.getModifiers();
+					if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+			}
+
+			this.accessors = new FieldAccessor[fields.size()];
+			StringBuilder descriptor = new StringBuilder(type.getName()).append('{');
+			for (int i = 0; i < this.accessors.length; i++) {
+				Field field = fields.get(i);
+				this.accessors[i] = accessor(field);
+				descriptor.append(field.getName()).append(':').append(field.getGenericType()).append(';');
+			}
+			this.descriptor = descriptor.append('}').toString();
+		}
+
+		int signature() {
+			Integer signature = this.signature;
+			if (signature == null) {
+				StringBuilder descriptor = new StringBuilder();
+				describe(descriptor, new LinkedHashSet<Class<?>>());
+				signature = descriptor.toString().hashCode();
+				this.signature = signature;
+			}
+			return signature;
+		}
+
+		private void describe(final StringBuilder descriptor, final Set<Class<?>> visited) {
+			descriptor.append(this.descriptor);
+			if (visited.add(this.type)) {
+				for (FieldAccessor accessor : this.accessors) {
+					for (Class<?> nested : accessor.nested()) {
+						layouts.get(nested).describe(descriptor, visited);
+					}
+				}
+			}
+		}
+
+		void write(final Object value, final DataOutput out) throws IOException {
+			if (value.getClass() != this.type) {
+				throw new IllegalArgumentException(String.format("Cannot encode %s as %s", value.getClass().getName(),
+						this.type.getName()));
+			}
+			try {
+				for (FieldAccessor accessor : this.accessors) {
+					accessor.write(value, out);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		Object read(final DataInput in) throws IOException {
+			try {
+				Object value = this.constructor.newInstance();
+				for (FieldAccessor accessor : this.accessors) {
+					accessor.read(value, in);
+				}
+				return value;
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(String.format("Unable to create %s", this.type.getName()), e);
+			}
+		}
+	}
+
+	private FieldAccessor accessor(final Field field) {
+		Class<?> type = field.getType();
+		if (type == boolean.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					out.writeBoolean(this.field.getBoolean(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setBoolean(owner, in.readBoolean());
+				}
+			};
+		} else if (type == byte.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					out.writeByte(this.field.getByte(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setByte(owner, in.readByte());
+				}
+			};
+		} else if (type == char.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					out.writeChar(this.field.getChar(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setChar(owner, in.readChar());
+				}
+			};
+		} else if (type == short.class || type == int.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					writeVarLong(out, this.field.getInt(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					if (this.field.getType() == short.class) {
+						this.field.setShort(owner, (short) readVarLong(in));
+					} else {
+						this.field.setInt(owner, (int) readVarLong(in));
+					}
+				}
+			};
+		} else if (type == long.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					writeVarLong(out, this.field.getLong(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setLong(owner, readVarLong(in));
+				}
+			};
+		} else if (type == float.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					out.writeFloat(this.field.getFloat(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setFloat(owner, in.readFloat());
+				}
+			};
+		} else if (type == double.class) {
+			return new FieldAccessor(field) {
+				@Override
+				void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+					out.writeDouble(this.field.getDouble(owner));
+				}
+
+				@Override
+				void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+					this.field.setDouble(owner, in.readDouble());
+				}
+			};
+		}
+
+		final ValueCodec codec = codec(field.getGenericType(), field);
+		return new FieldAccessor(field) {
+			@Override
+			void write(final Object owner, final DataOutput out) throws IOException, IllegalAccessException {
+				codec.write(this.field.get(owner), out);
+			}
+
+			@Override
+			void read(final Object owner, final DataInput in) throws IOException, IllegalAccessException {
+				this.field.set(owner, codec.read(in));
+			}
+
+			@Override
+			List<Class<?>> nested() {
+				return codec.nested();
+			}
+		};
+	}
+
+	private ValueCodec codec(final Type genericType, final Field field) {
+		Class<?> type = genericType instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) genericType)
+				.getRawType() : genericType instanceof Class ? (Class<?>) genericType : null;
+		if (type == null) {
+			throw unsupported(field, genericType);
+		}
+
+		if (type == String.class) {
+			return STRING;
+		} else if (type == Boolean.class || type == Byte.class || type == Character.class || type == Short.class
+				|| type == Integer.class || type == Long.class || type == Float.class || type == Double.class) {
+			return new BoxedCodec(type);
+		} else if (type.isEnum()) {
+			return new EnumCodec(type);
+		} else if (type == byte[].class) {
+			return BYTES;
+		} else if (type == List.class || type == Collection.class || type == Set.class) {
+			if (!(genericType instanceof ParameterizedType)) {
+				throw unsupported(field, genericType);
+			}
+			return new CollectionCodec(type == Set.class,
+					codec(((ParameterizedType) genericType).getActualTypeArguments()[0], field));
+		} else if (!type.isArray() && !type.isInterface() && !Modifier.isAbstract(type.getModifiers())
+				&& !type.getName().startsWith("java.")) {
+			return new ObjectCodec(type);
+		}
+		throw unsupported(field, genericType);
+	}
+
+	private static IllegalArgumentException unsupported(final Field field, final Type type) {
+		return new IllegalArgumentException(String.format("Unsupported type %s of settings field %s.%s", type, field
+				.getDeclaringClass().getName(), field.getName()));
+	}
+
+	private static void writeVarLong(final DataOutput out, final long value) throws IOException {
+		// zig-zag, so small negative numbers are short too
+		long bits = (value << 1) ^ (value >> 63);
+		while ((bits & ~0x7FL) != 0) {
+			out.writeByte((int) ((bits & 0x7F) | 0x80));
+			bits >>>= 7;
+		}
+		out.writeByte((int) bits);
+	}
+
+	private static long readVarLong(final DataInput in) throws IOException {
+		long bits = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			bits |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (bits >>> 1) ^ -(bits & 1);
+			}
+		}
+		throw new IOException("Malformed variable length number");
+	}
+
+	private static int readLength(final DataInput in) throws IOException {
+		long length = readVarLong(in);
+		if (length < -1 || length > Integer.MAX_VALUE) {
+			throw new IOException(String.format("Invalid length %d", length));
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Reads <code>length</code> bytes, growing the array as they are read.
+	 */
+	private static byte[] readBytes(final DataInput in, final int length) throws IOException {
+		byte[] bytes = new byte[Math.min(length, MAX_PREALLOCATED_BYTES)];
+		int read = 0;
+		while (true) {
+			in.readFully(bytes, read, bytes.length - read);
+			read = bytes.length;
+			if (read == length) {
+				return bytes;
+			}
+			bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+		}
+	}
+
+	/**
+	 * Reads and writes a field of an object.
+	 */
+	private abstract static class FieldAccessor {
+
+		final Field field;
+
+		FieldAccessor(final Field field) {
+			this.field = field;
+		}
+
+		abstract void write(Object owner, DataOutput out) throws IOException, IllegalAccessException;
+
+		abstract void read(Object owner, DataInput in) throws IOException, IllegalAccessException;
+
+		/**
+		 * Classes whose layouts this field is written with.
+		 */
+		List<Class<?>> nested() {
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Reads and writes a value that may be {@code null}.
+	 */
+	private abstract static class ValueCodec {
+
+		abstract void write(Object value, DataOutput out) throws IOException;
+
+		abstract Object read(DataInput in) throws IOException;
+
+		List<Class<?>> nested() {
+			return new ArrayList<>();
+		}
+	}
+
+	private static final ValueCodec STRING = new ValueCodec() {
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			if (value == null) {
+				writeVarLong(out, -1);
+				return;
+			}
+			byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+			writeVarLong(out, bytes.length);
+			out.write(bytes);
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			int length = readLength(in);
+			if (length == -1) {
+				return null;
+			}
+			return new String(readBytes(in, length), StandardCharsets.UTF_8);
+		}
+	};
+
+	private static final ValueCodec BYTES = new ValueCodec() {
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			if (value == null) {
+				writeVarLong(out, -1);
+				return;
+			}
+			byte[] bytes = (byte[]) value;
+			writeVarLong(out, bytes.length);
+			out.write(bytes);
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			int length = readLength(in);
+			if (length == -1) {
+				return null;
+			}
+			return readBytes(in, length);
+		}
+	};
+
+	private static final class BoxedCodec extends ValueCodec {
+
+		private final Class<?> type;
+
+		BoxedCodec(final Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			out.writeBoolean(value != null);
+			if (value == null) {
+				return;
+			}
+			if (this.type == Boolean.class) {
+				out.writeBoolean((Boolean) value);
+			} else if (this.type == Byte.class) {
+				out.writeByte((Byte) value);
+			} else if (this.type == Character.class) {
+				out.writeChar((Character) value);
+			} else if (this.type == Float.class) {
+				out.writeFloat((Float) value);
+			} else if (this.type == Double.class) {
+				out.writeDouble((Double) value);
+			} else {
+				writeVarLong(out, ((Number) value).longValue());
+			}
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			if (!in.readBoolean()) {
+				return null;
+			}
+			if (this.type == Boolean.class) {
+				return in.readBoolean();
+			} else if (this.type == Byte.class) {
+				return in.readByte();
+			} else if (this.type == Character.class) {
+				return in.readChar();
+			} else if (this.type == Float.class) {
+				return in.readFloat();
+			} else if (this.type == Double.class) {
+				return in.readDouble();
+			} else if (this.type == Short.class) {
+				return (short) readVarLong(in);
+			} else if (this.type == Integer.class) {
+				return (int) readVarLong(in);
+			}
+			return readVarLong(in);
+		}
+	}
+
+	private static final class EnumCodec extends ValueCodec {
+
+		private final Object[] constants;
+
+		EnumCodec(final Class<?> type) {
+			this.constants = type.getEnumConstants();
+		}
+
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			STRING.write(value == null ? null : ((Enum<?>) value).name(), out);
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			String name = (String) STRING.read(in);
+			if (name == null) {
+				return null;
+			}
+			for (Object constant : this.constants) {
+				if (((Enum<?>) constant).name().equals(name)) {
+					return constant;
+				}
+			}
+			throw new IOException(String.format("Unknown constant %s", name));
+		}
+	}
+
+	private static final class CollectionCodec extends ValueCodec {
+
+		private final boolean set;
+
+		private final ValueCodec elements;
+
+		CollectionCodec(final boolean set, final ValueCodec elements) {
+			this.set = set;
+			this.elements = elements;
+		}
+
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			if (value == null) {
+				writeVarLong(out, -1);
+				return;
+			}
+			Collection<?> collection = (Collection<?>) value;
+			writeVarLong(out, collection.size());
+			for (Object element : collection) {
+				this.elements.write(element, out);
+			}
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			int size = readLength(in);
+			if (size == -1) {
+				return null;
+			}
+			Collection<Object> collection = this.set ? new LinkedHashSet<>() : new ArrayList<>(Math.min(size,
+					MAX_PREALLOCATED_ELEMENTS));
+			for (int i = 0; i < size; i++) {
+				collection.add(this.elements.read(in));
+			}
+			return collection;
+		}
+
+		@Override
+		List<Class<?>> nested() {
+			return this.elements.nested();
+		}
+	}
+
+	private final class ObjectCodec extends ValueCodec {
+
+		private final Class<?> type;
+
+		ObjectCodec(final Class<?> type) {
+			this.type = type;
+		}
+
+		@Override
+		void write(final Object value, final DataOutput out) throws IOException {
+			out.writeBoolean(value != null);
+			if (value != null) {
+				layouts.get(this.type).write(value, out);
+			}
+		}
+
+		@Override
+		Object read(final DataInput in) throws IOException {
+			return in.readBoolean() ? layouts.get(this.type).read(in) : null;
+		}
+
+		@Override
+		List<Class<?>> nested() {
+			List<Class<?>> nested = new ArrayList<>();
+			nested.add(this.type);
+			return nested;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package eu.rageproject.asset.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Provides the {@link IStreamDataStorage} operations for a
+ * {@link IDataStorage}.
+ *
+ * <p>
+ * The static methods implement the buffer operations on top of the stream
+ * ones, for {@link IStreamDataStorage} implementations that have no better
+ * way to do it.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * Adapted storages keep storing strings: bytes are converted from and to
+ * UTF-8 text, so they must be UTF-8 text and are copied as in
+ * {@link IDataStorage#load(String)} and
+ * {@link IDataStorage#save(String, String)}.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class DataStorageAdapter implements IStreamDataStorage {
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/**
+	 * Gets the stream operations of a storage.
+	 *
+	 * @param storage
+	 *            The storage.
+	 *
+	 * @return <code>storage</code> itself if it is a
+	 *         {@link IStreamDataStorage}, an adapter otherwise.
+	 */
+	public static IStreamDataStorage adapt(final IDataStorage storage) {
+		if (storage instanceof IStreamDataStorage) {
+			return (IStreamDataStorage) storage;
+		}
+		return new DataStorageAdapter(storage);
+	}
+
+	/**
+	 * Implements {@link IStreamDataStorage#load(String, ByteBuffer)} with
+	 * {@link IStreamDataStorage#openRead(String)}.
+	 *
+	 * @see IStreamDataStorage#load(String, ByteBuffer)
+	 */
+	public static ByteBuffer load(final IStreamDataStorage storage, final String fileId, final ByteBuffer buffer)
+			throws IOException {
+		if (!storage.exists(fileId)) {
+			return null;
+		}
+		ByteBuffer result = buffer == null ? ByteBuffer.allocate(INITIAL_BUFFER_SIZE) : buffer;
+		result.clear();
+		byte[] chunk = null;
+		try (InputStream in = storage.openRead(fileId)) {
+			while (true) {
+				if (!result.hasRemaining()) {
+					ByteBuffer larger = ByteBuffer.allocate(Math.max(INITIAL_BUFFER_SIZE, result.capacity() * 2));
+					result.flip();
+					larger.put(result);
+					result = larger;
+				}
+				int read;
+				if (result.hasArray()) {
+					read = in.read(result.array(), result.arrayOffset() + result.position(), result.remaining());
+					if (read > 0) {
+						result.position(result.position() + read);
+					}
+				} else {
+					if (chunk == null) {
+						chunk = new byte[INITIAL_BUFFER_SIZE];
+					}
+					read = in.read(chunk, 0, Math.min(chunk.length, result.remaining()));
+					if (read > 0) {
+						result.put(chunk, 0, read);
+					}
+				}
+				if (read < 0) {
+					break;
+				}
+			}
+		}
+		result.flip();
+		return result;
+	}
+
+	/**
+	 * Implements {@link IStreamDataStorage#save(String, ByteBuffer)} with
+	 * {@link IStreamDataStorage#openWrite(String)}.
+	 *
+	 * @see IStreamDataStorage#save(String, ByteBuffer)
+	 */
+	public static void save(final IStreamDataStorage storage, final String fileId, final ByteBuffer fileData)
+			throws IOException {
+		try (OutputStream out = storage.openWrite(fileId)) {
+			if (fileData.hasArray()) {
+				out.write(fileData.array(), fileData.arrayOffset() + fileData.position(), fileData.remaining());
+				fileData.position(fileData.limit());
+			} else {
+				byte[] chunk = new byte[Math.min(INITIAL_BUFFER_SIZE, fileData.remaining())];
+				while (fileData.hasRemaining()) {
+					int length = Math.min(chunk.length, fileData.remaining());
+					fileData.get(chunk, 0, length);
+					out.write(chunk, 0, length);
+				}
+			}
+		}
+	}
+
+	private final IDataStorage storage;
+
+	private DataStorageAdapter(final IDataStorage storage) {
+		this.storage = storage;
+	}
+
+	@Override
+	public boolean delete(final String fileId) {
+		return this.storage.delete(fileId);
+	}
+
+	@Override
+	public boolean exists(final String fileId) {
+		return this.storage.exists(fileId);
+	}
+
+	@Override
+	public String[] files() {
+		return this.storage.files();
+	}
+
+	@Override
+	public String load(final String fileId) {
+		return this.storage.load(fileId);
+	}
+
+	@Override
+	public void save(final String fileId, final String fileData) {
+		this.storage.save(fileId, fileData);
+	}
+
+	@Override
+	public InputStream openRead(final String fileId) throws IOException {
+		String data = this.storage.load(fileId);
+		if (data == null) {
+			throw new NoSuchFileException(fileId);
+		}
+		return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public OutputStream openWrite(final String fileId) {
+		return new ByteArrayOutputStream() {
+			private boolean closed;
+
+			@Override
+			public void close() {
+				if (!this.closed) {
+					this.closed = true;
+					storage.save(fileId, new String(this.buf, 0, this.count, StandardCharsets.UTF_8));
+				}
+			}
+		};
+	}
+
+	@Override
+	public ByteBuffer load(final String fileId, final ByteBuffer buffer) throws IOException {
+		return load(this, fileId, buffer);
+	}
+
+	@Override
+	public void save(final String fileId, final ByteBuffer fileData) throws IOException {
+		save(this, fileId, fileData);
+	}
+}
@@ -0,0 +1,237 @@
+package eu.rageproject.asset.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves asset dependencies against the assets registered in an
+ * {@link AssetManager}.
+ *
+ * <p>
+ * A dependency is a class name and a version range in min-max format
+ * (inclusive), as returned by {@link IAsset#getDependencies()}:
+ * </p>
+ * <ul>
+ * <li>{@code 1.2.3-*} (1.2.3 or higher)</li>
+ * <li>{@code 0.0-*} (all versions)</li>
+ * <li>{@code 1.2.3-2.2} (1.2.3 or higher, and lower than or equal to 2.2)</li>
+ * </ul>
+ *
+ * <p>
+ * Each (class, range) pair is resolved once against a precompiled
+ * {@link VersionRange}. The resolver then keeps the number of registered
+ * assets of the class within the range, and updates it as assets are
+ * registered and unregistered, so checking a dependency is a lock-free map
+ * lookup.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class DependencyResolver {
+
+	/**
+	 * Resolutions by class name and range.
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<String, Resolution>> resolutions;
+
+	/**
+	 * Number of registered assets by class name and version. Only accessed
+	 * while holding this object's lock.
+	 */
+	private final Map<String, Map<Version, Integer>> versions;
+
+	DependencyResolver() {
+		this.resolutions = new ConcurrentHashMap<>();
+		this.versions = new TreeMap<>();
+	}
+
+	/**
+	 * Checks if a dependency is satisfied by a registered asset.
+	 *
+	 * @param clazz
+	 *            The class name of the dependency.
+	 * @param range
+	 *            The version range of the dependency.
+	 *
+	 * @return {@code true} if an asset of {@code clazz} with a version within
+	 *         {@code range} is registered, {@code false} otherwise or if
+	 *         {@code range} is not a valid range.
+	 */
+	public boolean isResolved(final String clazz, final String range) {
+		return resolution(clazz, range).isResolved();
+	}
+
+	/**
+	 * Checks if the version range of a dependency is well formed.
+	 *
+	 * @param clazz
+	 *            The class name of the dependency.
+	 * @param range
+	 *            The version range of the dependency.
+	 *
+	 * @return {@code true} if the range is valid, {@code false} otherwise.
+	 */
+	public boolean isValid(final String clazz, final String range) {
+		return resolution(clazz, range).range.isValid();
+	}
+
+	/**
+	 * Checks if all the dependencies of an asset are resolved.
+	 *
+	 * @param asset
+	 *            The asset.
+	 *
+	 * @return {@code true} if all its dependencies are satisfied,
+	 *         {@code false} otherwise.
+	 */
+	public boolean isResolved(final IAsset asset) {
+		for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
+			if (!isResolved(dependency.getKey(), dependency.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the dependencies of an asset that are not resolved.
+	 *
+	 * @param asset
+	 *            The asset.
+	 *
+	 * @return the missing dependencies, class name to version range.
+	 */
+	public Map<String, String> getMissingDependencies(final IAsset asset) {
+		Map<String, String> missing = new TreeMap<>();
+		for (Map.Entry<String, String> dependency : asset.getDependencies().entrySet()) {
+			if (!isResolved(dependency.getKey(), dependency.getValue())) {
+				missing.put(dependency.getKey(), dependency.getValue());
+			}
+		}
+		return missing;
+	}
+
+	private Resolution resolution(final String clazz, final String range) {
+		ConcurrentMap<String, Resolution> byRange = this.resolutions.get(clazz);
+		if (byRange != null) {
+			Resolution resolution = byRange.get(range);
+			if (resolution != null) {
+				return resolution;
+			}
+		}
+		return resolve(clazz, range);
+	}
+
+	private synchronized Resolution resolve(final String clazz, final String range) {
+		ConcurrentMap<String, Resolution> byRange = this.resolutions.get(clazz);
+		if (byRange == null) {
+			byRange = new ConcurrentHashMap<>();
+			this.resolutions.put(clazz, byRange);
+		}
+		Resolution resolution = byRange.get(range);
+		if (resolution == null) {
+			resolution = new Resolution(range);
+			Map<Version, Integer> registered = this.versions.get(clazz);
+			if (registered != null) {
+				for (Map.Entry<Version, Integer> version : registered.entrySet()) {
+					if (resolution.contains(version.getKey())) {
+						resolution.matches += version.getValue();
+					}
+				}
+			}
+			byRange.put(range, resolution);
+		}
+		return resolution;
+	}
+
+	/**
+	 * Updates the resolutions after an asset is registered. Called by the
+	 * {@link AssetManager} while holding its registration lock.
+	 */
+	synchronized void registered(final String clazz, final Version version) {
+		if (version == null) {
+			return;
+		}
+		Map<Version, Integer> registered = this.versions.get(clazz);
+		if (registered == null) {
+			registered = new HashMap<>();
+			this.versions.put(clazz, registered);
+		}
+		Integer count = registered.get(version);
+		registered.put(version, count == null ? 1 : count + 1);
+
+		ConcurrentMap<String, Resolution> byRange = this.resolutions.get(clazz);
+		if (byRange != null) {
+			for (Resolution resolution : byRange.values()) {
+				if (resolution.contains(version)) {
+					resolution.matches++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the resolutions after an asset is unregistered. Called by the
+	 * {@link AssetManager} while holding its registration lock.
+	 */
+	synchronized void unregistered(final String clazz, final Version version) {
+		if (version == null) {
+			return;
+		}
+		Map<Version, Integer> registered = this.versions.get(clazz);
+		Integer count = registered == null ? null : registered.get(version);
+		if (count == null) {
+			return;
+		}
+		if (count > 1) {
+			registered.put(version, count - 1);
+		} else {
+			registered.remove(version);
+			if (registered.isEmpty()) {
+				this.versions.remove(clazz);
+			}
+		}
+
+		ConcurrentMap<String, Resolution> byRange = this.resolutions.get(clazz);
+		if (byRange != null) {
+			for (Resolution resolution : byRange.values()) {
+				if (resolution.contains(version)) {
+					resolution.matches--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A version range and the number of registered assets within it.
+	 */
+	private static final class Resolution {
+
+		final VersionRange range;
+
+		/**
+		 * Only modified while holding the resolver lock.
+		 */
+		volatile int matches;
+
+		Resolution(final String range) {
+			this.range = VersionRange.parse(range);
+		}
+
+		boolean contains(final Version version) {
+			return this.range.contains(version);
+		}
+
+		boolean isResolved() {
+			return this.matches > 0;
+		}
+	}
+}
@@ -1,14 +1,20 @@
 package eu.rageproject.asset.manager;
 
+import java.io.Closeable;
 import java.util.Map;
 
 /**
  * Interface for asset.
  * 
+ * <p>
+ * Assets are {@link Closeable}: closing an asset unregisters it from the
+ * {@link AssetManager} it was registered with.
+ * </p>
+ * 
  * @author Ivan Martinez-Ortiz
  *
  */
-public interface IAsset {
+public interface IAsset extends Closeable {
 
 	public String getClassName();
 	
@@ -27,4 +33,11 @@ public interface IAsset {
 	public IBridge getBridge();
 	
 	public void setBridge(final IBridge bridge);
+
+	/**
+	 * Unregisters this asset from its {@link AssetManager}. Once closed the
+	 * asset can no longer be found through the {@link AssetManager}.
+	 */
+	@Override
+	public void close();
 }
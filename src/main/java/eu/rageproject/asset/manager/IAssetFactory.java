@@ -0,0 +1,29 @@
+package eu.rageproject.asset.manager;
+
+/**
+ * Interface for asset factories.
+ * 
+ * <p>
+ * Factories registered with
+ * {@link AssetManager#registerAssetFactory(Class, IAssetFactory)} are used to
+ * create the asset the first time it is looked up.
+ * </p>
+ * 
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public interface IAssetFactory<T extends IAsset> {
+
+	/**
+	 * Creates the asset.
+	 * 
+	 * <p>
+	 * The {@link AssetManager} that owns the factory is entered (see
+	 * {@link AssetManager#enter()}) while the asset is created, so
+	 * {@link BaseAsset} subclasses register with it.
+	 * </p>
+	 * 
+	 * @return the new asset.
+	 */
+	public T create();
+}
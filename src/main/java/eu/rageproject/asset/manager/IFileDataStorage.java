@@ -0,0 +1,22 @@
+package eu.rageproject.asset.manager;
+
+import java.nio.file.Path;
+
+/**
+ * Interface for data storage backed by files.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public interface IFileDataStorage extends IDataStorage {
+
+	/**
+	 * Gets the file where <code>fileId</code> is stored.
+	 *
+	 * @param fileId
+	 *            file identifier.
+	 *
+	 * @return the file path, the file may not exist.
+	 */
+	public Path resolve(final String fileId);
+}
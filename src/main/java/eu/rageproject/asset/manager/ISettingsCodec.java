@@ -0,0 +1,72 @@
+package eu.rageproject.asset.manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Interface for settings encodings.
+ * 
+ * <p>
+ * A codec turns {@link ISettings} into bytes and back. As
+ * {@link IDataStorage} and {@link IDefaultSettings} store strings, codecs
+ * also provide a textual form of their encoding. {@link IStreamDataStorage}s
+ * store the bytes.
+ * </p>
+ * 
+ * @author Ivan Martinez-Ortiz
+ *
+ * @see BaseAsset#setSettingsCodec(ISettingsCodec)
+ */
+public interface ISettingsCodec {
+
+	/**
+	 * Encodes settings as text.
+	 * 
+	 * @param settings
+	 *            The settings to encode.
+	 * 
+	 * @return the encoded settings.
+	 */
+	String encode(final ISettings settings);
+
+	/**
+	 * Decodes settings encoded by {@link #encode(ISettings)}.
+	 * 
+	 * @param data
+	 *            The encoded settings.
+	 * @param type
+	 *            The settings class.
+	 * 
+	 * @return the decoded settings.
+	 */
+	<T extends ISettings> T decode(final String data, final Class<T> type);
+
+	/**
+	 * Encodes settings to a stream.
+	 * 
+	 * @param settings
+	 *            The settings to encode.
+	 * @param out
+	 *            The stream, not closed.
+	 * 
+	 * @throws IOException
+	 *             if writing to <code>out</code> fails.
+	 */
+	void write(final ISettings settings, final OutputStream out) throws IOException;
+
+	/**
+	 * Decodes settings encoded by {@link #write(ISettings, OutputStream)}.
+	 * 
+	 * @param in
+	 *            The stream, not closed.
+	 * @param type
+	 *            The settings class.
+	 * 
+	 * @return the decoded settings.
+	 * 
+	 * @throws IOException
+	 *             if reading from <code>in</code> fails.
+	 */
+	<T extends ISettings> T read(final InputStream in, final Class<T> type) throws IOException;
+}
@@ -0,0 +1,82 @@
+package eu.rageproject.asset.manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for data storage that reads and writes files as bytes, without
+ * building their whole content as a {@link String}.
+ *
+ * <p>
+ * {@link DataStorageAdapter#adapt(IDataStorage)} provides these operations
+ * for any {@link IDataStorage}.
+ * </p>
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public interface IStreamDataStorage extends IDataStorage {
+
+	/**
+	 * Opens the content of <code>fileId</code> for reading.
+	 *
+	 * @param fileId
+	 *            file identifier to read.
+	 *
+	 * @return the file content, to be closed by the caller.
+	 *
+	 * @throws java.nio.file.NoSuchFileException
+	 *             if the file does not exist.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public InputStream openRead(final String fileId) throws IOException;
+
+	/**
+	 * Opens <code>fileId</code> for writing. The file content is replaced at
+	 * the latest when the stream is closed.
+	 *
+	 * @param fileId
+	 *            file identifier to write.
+	 *
+	 * @return the stream, to be closed by the caller.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public OutputStream openWrite(final String fileId) throws IOException;
+
+	/**
+	 * Loads content of the <code>fileId</code> into a buffer.
+	 *
+	 * @param fileId
+	 *            file identifier to load.
+	 * @param buffer
+	 *            buffer to reuse if the content fits in it, may be
+	 *            {@code null}.
+	 *
+	 * @return <code>buffer</code>, or a new buffer if it did not fit, flipped
+	 *         for reading the content; {@code null} if the file does not
+	 *         exist.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public ByteBuffer load(final String fileId, final ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Saves the remaining bytes of a buffer as the content of
+	 * <code>fileId</code>.
+	 *
+	 * @param fileId
+	 *            file identifier to save.
+	 * @param fileData
+	 *            file content to save, consumed.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public void save(final String fileId, final ByteBuffer fileData) throws IOException;
+}
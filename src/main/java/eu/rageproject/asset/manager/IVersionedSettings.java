@@ -0,0 +1,25 @@
+package eu.rageproject.asset.manager;
+
+/**
+ * Interface for settings that track their changes.
+ * 
+ * <p>
+ * Settings implementing this interface let {@link BaseAsset} skip saving
+ * them, without even serializing them, when they have not changed since they
+ * were last saved or loaded.
+ * </p>
+ * 
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public interface IVersionedSettings extends ISettings {
+
+	/**
+	 * Gets the modification stamp of the settings. Implementations must
+	 * return a different stamp after every change, for instance by
+	 * incrementing a counter in every setter.
+	 * 
+	 * @return the modification stamp.
+	 */
+	long getModificationStamp();
+}
@@ -0,0 +1,778 @@
+package eu.rageproject.asset.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores files as records appended to a log of segment files.
+ *
+ * <p>
+ * Each save appends a record to the active segment and each delete a
+ * tombstone, instead of writing one file per file identifier. An in-memory
+ * index maps each file identifier to its last record, it is rebuilt by
+ * scanning the segments when the storage is opened. Once the active segment
+ * reaches the segment size a new one is started.
+ * </p>
+ *
+ * <p>
+ * Records replaced or deleted are garbage. When at least half of a full
+ * segment is garbage, a background thread copies its live records to the
+ * active segment and deletes it. Tombstones are only copied while an older
+ * segment still holds a record of the file they delete.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe. Saves and deletes are serialized, loads read
+ * segments without locking. Records are checksummed: a record partially
+ * written when the process stopped is discarded, and the segment truncated,
+ * on open.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class LogStructuredDataStorage implements IBridge, IDataStorage, Closeable {
+
+	private static final Logger log = Logger.getLogger(AssetManager.LOGGER_KEY);
+
+	/**
+	 * Default segment size, in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Fraction of garbage of a segment that triggers its compaction.
+	 */
+	private static final double COMPACTION_THRESHOLD = 0.5;
+
+	/**
+	 * CRC, key length and value length.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * Value length of the records that delete a file.
+	 */
+	private static final int TOMBSTONE = -1;
+
+	/**
+	 * Initial size of the buffer segments are scanned with.
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final boolean sync;
+
+	private final ConcurrentMap<String, Location> index;
+
+	private final ConcurrentNavigableMap<Long, Segment> segments;
+
+	/**
+	 * Guards appends and {@link #active}.
+	 */
+	private final Object appendLock;
+
+	/**
+	 * Guards compactions.
+	 */
+	private final Object compactionLock;
+
+	private Segment active;
+
+	private final Thread compactor;
+
+	private volatile boolean closed;
+
+	private boolean compactionRequested;
+
+	/**
+	 * Opens a storage with the {@link #DEFAULT_SEGMENT_SIZE}, that does not
+	 * force writes to the device.
+	 *
+	 * @param directory
+	 *            The directory of the segments, created if needed.
+	 *
+	 * @throws IOException
+	 *             if the segments cannot be read.
+	 */
+	public LogStructuredDataStorage(final Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, false);
+	}
+
+	/**
+	 * Opens a storage.
+	 *
+	 * @param directory
+	 *            The directory of the segments, created if needed.
+	 * @param segmentSize
+	 *            The size, in bytes, from which a new segment is started.
+	 * @param sync
+	 *            {@code true} to force each record to the storage device
+	 *            before save or delete return.
+	 *
+	 * @throws IOException
+	 *             if the segments cannot be read.
+	 */
+	public LogStructuredDataStorage(final Path directory, final int segmentSize, final boolean sync)
+			throws IOException {
+		this(directory, segmentSize, sync, true);
+	}
+
+	/**
+	 * Opens a storage.
+	 *
+	 * @param backgroundCompaction
+	 *            {@code false} to only compact segments when
+	 *            {@link #compact()} is called.
+	 *
+	 * @see #LogStructuredDataStorage(Path, int, boolean)
+	 */
+	LogStructuredDataStorage(final Path directory, final int segmentSize, final boolean sync,
+			final boolean backgroundCompaction) throws IOException {
+		if (segmentSize <= HEADER_SIZE) {
+			throw new IllegalArgumentException(String.format("Invalid segment size %d", segmentSize));
+		}
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.sync = sync;
+		this.index = new ConcurrentHashMap<>();
+		this.segments = new ConcurrentSkipListMap<>();
+		this.appendLock = new Object();
+		this.compactionLock = new Object();
+
+		recover();
+
+		if (backgroundCompaction) {
+			this.compactor = new Thread("log-compactor") {
+				@Override
+				public void run() {
+					compactInBackground();
+				}
+			};
+			this.compactor.setDaemon(true);
+			this.compactor.start();
+		} else {
+			this.compactor = null;
+		}
+	}
+
+	@Override
+	public boolean delete(final String fileId) {
+		synchronized (this.appendLock) {
+			if (!this.index.containsKey(fileId)) {
+				return false;
+			}
+			append(fileId, null);
+			return true;
+		}
+	}
+
+	@Override
+	public boolean exists(final String fileId) {
+		return this.index.containsKey(fileId);
+	}
+
+	@Override
+	public String[] files() {
+		return this.index.keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public String load(final String fileId) {
+		checkOpen();
+		while (true) {
+			Location location = this.index.get(fileId);
+			if (location == null) {
+				return null;
+			}
+			byte[] value = new byte[location.valueLength];
+			try {
+				location.segment.read(ByteBuffer.wrap(value), location.offset + HEADER_SIZE + location.keyLength);
+				return new String(value, StandardCharsets.UTF_8);
+			} catch (ClosedByInterruptException e) {
+				throw new IllegalStateException(String.format("Interrupted while loading %s", fileId), e);
+			} catch (ClosedChannelException e) {
+				// the segment has been compacted, the index points to the record copy
+				checkOpen();
+			} catch (IOException e) {
+				throw new IllegalStateException(String.format("Unable to load %s", fileId), e);
+			}
+		}
+	}
+
+	@Override
+	public void save(final String fileId, final String fileData) {
+		if (fileData == null) {
+			throw new IllegalArgumentException(String.format("Null data for %s", fileId));
+		}
+		synchronized (this.appendLock) {
+			append(fileId, fileData.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Gets the number of segments.
+	 *
+	 * @return the segment count, including the active segment.
+	 */
+	public int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	/**
+	 * Compacts the full segments whose garbage reaches the compaction
+	 * threshold, without waiting for the background compaction. Segments
+	 * filled by the compaction itself are left for the next one.
+	 *
+	 * @return the number of segments compacted.
+	 */
+	public int compact() {
+		int compacted = 0;
+		synchronized (this.compactionLock) {
+			long active;
+			synchronized (this.appendLock) {
+				active = this.active.id;
+			}
+			for (Segment segment : this.segments.headMap(active).values()) {
+				if (this.closed) {
+					break;
+				}
+				if (isGarbage(segment)) {
+					try {
+						compact(segment);
+						compacted++;
+					} catch (IOException e) {
+						log.log(Level.WARNING, String.format("Unable to compact %s", segment.path), e);
+					}
+				}
+			}
+		}
+		return compacted;
+	}
+
+	/**
+	 * Stops the background compaction and closes the segments.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this.appendLock) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.appendLock.notifyAll();
+		}
+		if (this.compactor != null) {
+			try {
+				this.compactor.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this.appendLock) {
+			for (Segment segment : this.segments.values()) {
+				segment.retire();
+			}
+		}
+	}
+
+	private void checkOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("The storage has been closed");
+		}
+	}
+
+	/**
+	 * Appends a record to the active segment and updates the index. Must be
+	 * called holding {@link #appendLock}.
+	 *
+	 * @param value
+	 *            The value, {@code null} for a tombstone.
+	 */
+	private void append(final String fileId, final byte[] value) {
+		checkOpen();
+		byte[] key = fileId.getBytes(StandardCharsets.UTF_8);
+		int valueLength = value == null ? TOMBSTONE : value.length;
+		ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + key.length + Math.max(valueLength, 0));
+		record.putInt(0).putInt(key.length).putInt(valueLength).put(key);
+		if (value != null) {
+			record.put(value);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 4, record.capacity() - 4);
+		record.putInt(0, (int) crc.getValue());
+		record.flip();
+		try {
+			Location location = write(record, fileId, key.length, valueLength);
+			Location previous = value == null ? this.index.remove(fileId) : this.index.put(fileId, location);
+			if (value == null) {
+				// tombstones are garbage once the records they delete are gone
+				location.segment.garbage.addAndGet(location.length());
+			}
+			if (previous != null) {
+				release(previous);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to save %s", fileId), e);
+		}
+	}
+
+	/**
+	 * Writes a record at the end of the active segment, starting a new one if
+	 * it is full. Must be called holding {@link #appendLock}.
+	 */
+	private Location write(final ByteBuffer record, final String key, final int keyLength, final int valueLength)
+			throws IOException {
+		Segment segment = this.active;
+		if (segment.size > 0 && segment.size + record.remaining() > this.segmentSize) {
+			segment = createSegment(segment.id + 1);
+			this.active = segment;
+		}
+		long offset = segment.size;
+		segment.write(record, offset);
+		if (valueLength != TOMBSTONE) {
+			segment.keys.add(key);
+		}
+		if (this.sync) {
+			segment.channel().force(false);
+		}
+		return new Location(segment, offset, keyLength, valueLength);
+	}
+
+	/**
+	 * Accounts for a record that is no longer live.
+	 */
+	private void release(final Location location) {
+		location.segment.garbage.addAndGet(location.length());
+		if (this.compactor != null && location.segment != this.active && isGarbage(location.segment)) {
+			requestCompaction();
+		}
+	}
+
+	private boolean isGarbage(final Segment segment) {
+		synchronized (this.appendLock) {
+			return segment != this.active && segment.size > 0
+					&& segment.garbage.get() >= segment.size * COMPACTION_THRESHOLD;
+		}
+	}
+
+	private void requestCompaction() {
+		synchronized (this.appendLock) {
+			this.compactionRequested = true;
+			this.appendLock.notifyAll();
+		}
+	}
+
+	private void compactInBackground() {
+		while (true) {
+			synchronized (this.appendLock) {
+				while (!this.compactionRequested && !this.closed) {
+					try {
+						this.appendLock.wait();
+					} catch (InterruptedException e) {
+						// stops once closed
+					}
+				}
+				if (this.closed) {
+					return;
+				}
+				this.compactionRequested = false;
+			}
+			compact();
+		}
+	}
+
+	/**
+	 * Copies the live records of a full segment to the active segment and
+	 * deletes it. Must be called holding {@link #compactionLock}.
+	 */
+	private void compact(final Segment segment) throws IOException {
+		SegmentReader reader = new SegmentReader(segment.channel(), segment.size);
+		int moved = 0;
+		while (reader.next()) {
+			ByteBuffer record = reader.record();
+			int keyLength = reader.keyLength();
+			int valueLength = reader.valueLength();
+			String key = reader.key();
+			synchronized (this.appendLock) {
+				if (this.closed) {
+					return;
+				}
+				Location location = this.index.get(key);
+				if (valueLength == TOMBSTONE) {
+					// a tombstone is kept while older segments hold records it deletes
+					if (location == null && hasOlderRecords(key, segment)) {
+						Location copy = write(record, key, keyLength, valueLength);
+						copy.segment.garbage.addAndGet(copy.length());
+						moved++;
+					}
+				} else if (location != null && location.segment == segment && location.offset == reader.offset) {
+					this.index.put(key, write(record, key, keyLength, valueLength));
+					moved++;
+				}
+			}
+		}
+		synchronized (this.appendLock) {
+			this.active.channel().force(false);
+			this.segments.remove(segment.id);
+			segment.retire();
+		}
+		Files.deleteIfExists(segment.path);
+		if (log.isLoggable(Level.FINE)) {
+			log.fine(String.format("Compacted %s, %d record(s) moved", segment.path, moved));
+		}
+	}
+
+	/**
+	 * Checks whether a segment older than <code>segment</code> holds a record
+	 * of a file, live or not. Must be called holding {@link #appendLock}.
+	 */
+	private boolean hasOlderRecords(final String key, final Segment segment) {
+		for (Segment older : this.segments.headMap(segment.id).values()) {
+			if (older.keys.contains(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rebuilds the index from the segments, oldest first, and truncates the
+	 * records partially written at the end of the last segment.
+	 */
+	private void recover() throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*"
+				+ SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				try {
+					long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length()
+							- SEGMENT_SUFFIX.length()));
+					this.segments.put(id, new Segment(id, path));
+				} catch (NumberFormatException e) {
+					// not a segment
+				}
+			}
+		}
+
+		for (Segment segment : this.segments.values()) {
+			long size = segment.channel().size();
+			SegmentReader reader = new SegmentReader(segment.channel(), size);
+			while (reader.next()) {
+				Location location = new Location(segment, reader.offset, reader.keyLength(), reader.valueLength());
+				Location previous;
+				if (location.valueLength == TOMBSTONE) {
+					previous = this.index.remove(reader.key());
+					segment.garbage.addAndGet(location.length());
+				} else {
+					String key = reader.key();
+					previous = this.index.put(key, location);
+					segment.keys.add(key);
+				}
+				if (previous != null) {
+					previous.segment.garbage.addAndGet(previous.length());
+				}
+			}
+			long position = reader.end();
+			segment.size = position;
+			if (position < size) {
+				if (segment.id == this.segments.lastKey()) {
+					log.warning(String.format("Truncating %d byte(s) of incomplete records of %s", size - position,
+							segment.path));
+					segment.channel().truncate(position);
+				} else {
+					log.warning(String.format("Ignoring %d byte(s) of corrupt records of %s", size - position,
+							segment.path));
+				}
+			}
+		}
+
+		if (this.segments.isEmpty()) {
+			this.active = createSegment(0);
+		} else {
+			this.active = this.segments.lastEntry().getValue();
+		}
+	}
+
+	private Segment createSegment(final long id) throws IOException {
+		Path path = this.directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		Segment segment = new Segment(id, path);
+		this.segments.put(id, segment);
+		return segment;
+	}
+
+	/**
+	 * A segment file.
+	 */
+	private static final class Segment {
+
+		final long id;
+
+		final Path path;
+
+		/**
+		 * Bytes of records that are no longer live.
+		 */
+		final AtomicLong garbage;
+
+		/**
+		 * Bytes of valid records. Guarded by the append lock.
+		 */
+		long size;
+
+		/**
+		 * Files with records in this segment, live or not, excluding
+		 * tombstones. Guarded by the append lock.
+		 */
+		final Set<String> keys;
+
+		private volatile FileChannel channel;
+
+		private volatile boolean retired;
+
+		Segment(final long id, final Path path) throws IOException {
+			this.id = id;
+			this.path = path;
+			this.garbage = new AtomicLong();
+			this.keys = new HashSet<>();
+			this.channel = open();
+		}
+
+		private FileChannel open() throws IOException {
+			return FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+		}
+
+		/**
+		 * Gets the segment channel, reopened if it was closed by an
+		 * interrupted thread.
+		 *
+		 * @throws ClosedChannelException
+		 *             if the segment has been compacted.
+		 */
+		FileChannel channel() throws IOException {
+			FileChannel channel = this.channel;
+			if (channel.isOpen()) {
+				return channel;
+			}
+			synchronized (this) {
+				if (this.retired) {
+					throw new ClosedChannelException();
+				}
+				if (!this.channel.isOpen()) {
+					this.channel = open();
+				}
+				return this.channel;
+			}
+		}
+
+		void read(final ByteBuffer buffer, final long position) throws IOException {
+			long offset = position;
+			while (buffer.hasRemaining()) {
+				FileChannel channel = channel();
+				try {
+					int read = channel.read(buffer, offset);
+					if (read < 0) {
+						throw new IOException(String.format("Unexpected end of %s", this.path));
+					}
+					offset += read;
+				} catch (ClosedByInterruptException e) {
+					throw e;
+				} catch (ClosedChannelException e) {
+					// closed by a thread interrupted while using it
+					if (this.retired) {
+						throw e;
+					}
+				}
+			}
+		}
+
+		void write(final ByteBuffer record, final long position) throws IOException {
+			long offset = position;
+			while (record.hasRemaining()) {
+				offset += channel().write(record, offset);
+			}
+			this.size = offset;
+		}
+
+		void retire() throws IOException {
+			synchronized (this) {
+				this.retired = true;
+			}
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Reads the valid records of a segment in order, through a buffer
+	 * instead of a mapping so that the segment can be deleted once its
+	 * channel is closed.
+	 */
+	private static final class SegmentReader {
+
+		private final FileChannel channel;
+
+		private final long size;
+
+		private ByteBuffer buffer;
+
+		/**
+		 * Bytes read from the channel.
+		 */
+		private long read;
+
+		/**
+		 * Offset of the current record in the segment.
+		 */
+		long offset;
+
+		/**
+		 * Length of the current record.
+		 */
+		private int length;
+
+		SegmentReader(final FileChannel channel, final long size) {
+			this.channel = channel;
+			this.size = size;
+			this.buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			this.buffer.flip();
+		}
+
+		/**
+		 * Moves to the next record.
+		 *
+		 * @return {@code false} if there is no valid record at the end of the
+		 *         current one.
+		 */
+		boolean next() throws IOException {
+			this.offset += this.length;
+			this.buffer.position(this.buffer.position() + this.length);
+			this.length = 0;
+			if (!fill(HEADER_SIZE)) {
+				return false;
+			}
+			int keyLength = keyLength();
+			int valueLength = valueLength();
+			if (keyLength < 0 || valueLength < TOMBSTONE) {
+				return false;
+			}
+			long length = (long) HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+			if (length > this.size - this.offset || !fill((int) length)) {
+				return false;
+			}
+			int position = this.buffer.position();
+			CRC32 crc = new CRC32();
+			crc.update(this.buffer.array(), position + 4, (int) length - 4);
+			if ((int) crc.getValue() != this.buffer.getInt(position)) {
+				return false;
+			}
+			this.length = (int) length;
+			return true;
+		}
+
+		/**
+		 * Gets the end of the last valid record.
+		 */
+		long end() {
+			return this.offset + this.length;
+		}
+
+		int keyLength() {
+			return this.buffer.getInt(this.buffer.position() + 4);
+		}
+
+		int valueLength() {
+			return this.buffer.getInt(this.buffer.position() + 8);
+		}
+
+		String key() {
+			return new String(this.buffer.array(), this.buffer.position() + HEADER_SIZE, keyLength(),
+					StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Gets the current record, valid until the next call to
+		 * {@link #next()}.
+		 */
+		ByteBuffer record() {
+			return ByteBuffer.wrap(this.buffer.array(), this.buffer.position(), this.length);
+		}
+
+		/**
+		 * Reads from the channel until the buffer holds at least the given
+		 * number of bytes.
+		 */
+		private boolean fill(final int count) throws IOException {
+			if (this.buffer.remaining() >= count) {
+				return true;
+			}
+			if (count > this.buffer.capacity()) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(count, this.buffer.capacity() * 2));
+				larger.put(this.buffer);
+				this.buffer = larger;
+			} else {
+				this.buffer.compact();
+			}
+			while (this.buffer.position() < count && this.buffer.hasRemaining() && this.read < this.size) {
+				int read = this.channel.read(this.buffer, this.read);
+				if (read < 0) {
+					break;
+				}
+				this.read += read;
+			}
+			this.buffer.flip();
+			return this.buffer.remaining() >= count;
+		}
+	}
+
+	/**
+	 * The last record of a file.
+	 */
+	private static final class Location {
+
+		final Segment segment;
+
+		final long offset;
+
+		final int keyLength;
+
+		final int valueLength;
+
+		Location(final Segment segment, final long offset, final int keyLength, final int valueLength) {
+			this.segment = segment;
+			this.offset = offset;
+			this.keyLength = keyLength;
+			this.valueLength = valueLength;
+		}
+
+		int length() {
+			return HEADER_SIZE + this.keyLength + Math.max(this.valueLength, 0);
+		}
+	}
+}
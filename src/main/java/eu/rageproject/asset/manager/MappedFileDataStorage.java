@@ -0,0 +1,446 @@
+package eu.rageproject.asset.manager;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores files in a directory, reading large files through memory mapped
+ * {@link FileChannel}s.
+ *
+ * <p>
+ * Files of at least {@link #MAP_THRESHOLD} bytes are mapped by
+ * {@link #load(String, ByteBuffer)}, which returns the mapping itself when
+ * the given buffer is too small, without copying the file, and by
+ * {@link #openRead(String)}, and copied from the mapping into a per-thread
+ * reusable buffer by {@link #load(String)}. Smaller files, for which mapping
+ * costs more than reading, are read into that buffer. Files larger than
+ * {@link Integer#MAX_VALUE} bytes can only be read as streams.
+ * </p>
+ *
+ * <p>
+ * Files are written to a temporary file of the same directory that then
+ * replaces them, so readers never see a partially written file. Heap data
+ * is written through a per-thread preallocated direct buffer.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe. Buffers returned by
+ * {@link #load(String, ByteBuffer)} may map the file: they are read-only
+ * and keep showing the replaced content once the file is saved again. On
+ * some platforms (e.g. Windows) a mapped file cannot be replaced or deleted
+ * until its mapping is garbage collected.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class MappedFileDataStorage implements IBridge, IFileDataStorage, IStreamDataStorage {
+
+	/**
+	 * Minimum size of the files that are mapped instead of read.
+	 */
+	public static final int MAP_THRESHOLD = 64 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Larger read buffers are not kept for reuse.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final String TEMP_PREFIX = ".";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Read buffer of the current thread, grown on demand.
+	 */
+	private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[INITIAL_BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Preallocated direct write buffer of the current thread.
+	 */
+	private static final ThreadLocal<ByteBuffer> WRITE_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		}
+	};
+
+	private final Path directory;
+
+	private final boolean sync;
+
+	/**
+	 * Initializes a storage that does not force writes to the device.
+	 *
+	 * @param directory
+	 *            The directory files are stored in, created if needed.
+	 *
+	 * @throws IOException
+	 *             if the directory cannot be created.
+	 */
+	public MappedFileDataStorage(final Path directory) throws IOException {
+		this(directory, false);
+	}
+
+	/**
+	 * Initializes a storage.
+	 *
+	 * @param directory
+	 *            The directory files are stored in, created if needed.
+	 * @param sync
+	 *            {@code true} to force each written file to the storage
+	 *            device before it replaces the previous one.
+	 *
+	 * @throws IOException
+	 *             if the directory cannot be created.
+	 */
+	public MappedFileDataStorage(final Path directory, final boolean sync) throws IOException {
+		this.directory = Files.createDirectories(directory.toAbsolutePath().normalize());
+		this.sync = sync;
+	}
+
+	/**
+	 * Gets the directory files are stored in.
+	 *
+	 * @return the storage directory.
+	 */
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if <code>fileId</code> is not a path inside the storage
+	 *             directory.
+	 */
+	@Override
+	public Path resolve(final String fileId) {
+		Path file = this.directory.resolve(fileId).normalize();
+		if (!file.startsWith(this.directory) || file.equals(this.directory)) {
+			throw new IllegalArgumentException(String.format("Invalid file identifier %s", fileId));
+		}
+		return file;
+	}
+
+	@Override
+	public boolean delete(final String fileId) {
+		try {
+			return Files.deleteIfExists(resolve(fileId));
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to delete %s", fileId), e);
+		}
+	}
+
+	@Override
+	public boolean exists(final String fileId) {
+		return Files.isRegularFile(resolve(fileId));
+	}
+
+	/**
+	 * Lists the files of the storage directory and of its subdirectories, the
+	 * latter as <code>/</code> separated paths relative to the storage
+	 * directory, as accepted by {@link #resolve(String)}.
+	 */
+	@Override
+	public String[] files() {
+		final List<String> files = new ArrayList<>();
+		try {
+			Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+					String name = file.getFileName().toString();
+					if (attrs.isRegularFile() && !(name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX))) {
+						StringBuilder fileId = new StringBuilder();
+						for (Path element : directory.relativize(file)) {
+							if (fileId.length() > 0) {
+								fileId.append('/');
+							}
+							fileId.append(element);
+						}
+						files.add(fileId.toString());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path file, final IOException e) throws IOException {
+					if (e instanceof NoSuchFileException) {
+						// deleted or replaced while listing
+						return FileVisitResult.CONTINUE;
+					}
+					throw e;
+				}
+			});
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to list %s", this.directory), e);
+		}
+		return files.toArray(new String[files.size()]);
+	}
+
+	@Override
+	public String load(final String fileId) {
+		try (FileChannel channel = FileChannel.open(resolve(fileId), StandardOpenOption.READ)) {
+			int size = checkSize(fileId, channel.size());
+			byte[] buffer = READ_BUFFER.get();
+			if (buffer.length < size) {
+				buffer = new byte[size];
+				if (size <= MAX_RETAINED_BUFFER_SIZE) {
+					READ_BUFFER.set(buffer);
+				}
+			}
+			if (size >= MAP_THRESHOLD) {
+				// copied once from the mapping, instead of through a temporary direct buffer
+				channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(buffer, 0, size);
+				return new String(buffer, 0, size, StandardCharsets.UTF_8);
+			}
+			ByteBuffer wrapped = ByteBuffer.wrap(buffer, 0, size);
+			while (wrapped.hasRemaining() && channel.read(wrapped) >= 0) {
+				// files are replaced, not modified, the size does not change
+			}
+			return new String(buffer, 0, wrapped.position(), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to load %s", fileId), e);
+		}
+	}
+
+	@Override
+	public void save(final String fileId, final String fileData) {
+		try {
+			save(fileId, ByteBuffer.wrap(fileData.getBytes(StandardCharsets.UTF_8)));
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to save %s", fileId), e);
+		}
+	}
+
+	@Override
+	public InputStream openRead(final String fileId) throws IOException {
+		FileChannel channel = FileChannel.open(resolve(fileId), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size >= MAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+				// the mapping stays valid once the channel is closed
+				ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				channel.close();
+				return new BufferInputStream(mapped);
+			}
+			return Channels.newInputStream(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public OutputStream openWrite(final String fileId) throws IOException {
+		final Path target = resolve(fileId);
+		final Path temp = createTemp(target);
+		final FileChannel channel;
+		try {
+			channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), INITIAL_BUFFER_SIZE);
+		return new FilterOutputStream(out) {
+			private boolean closed;
+
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				this.out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (this.closed) {
+					return;
+				}
+				this.closed = true;
+				boolean written = false;
+				try {
+					this.out.flush();
+					if (MappedFileDataStorage.this.sync) {
+						channel.force(false);
+					}
+					channel.close();
+					replace(temp, target);
+					written = true;
+				} finally {
+					channel.close();
+					if (!written) {
+						Files.deleteIfExists(temp);
+					}
+				}
+			}
+		};
+	}
+
+	@Override
+	public ByteBuffer load(final String fileId, final ByteBuffer buffer) throws IOException {
+		try (FileChannel channel = FileChannel.open(resolve(fileId), StandardOpenOption.READ)) {
+			int size = checkSize(fileId, channel.size());
+			if (buffer != null && buffer.capacity() >= size) {
+				buffer.clear();
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					// keep reading
+				}
+				buffer.flip();
+				return buffer;
+			}
+			if (size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer result = ByteBuffer.allocate(size);
+			while (result.hasRemaining() && channel.read(result) >= 0) {
+				// keep reading
+			}
+			result.flip();
+			return result;
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void save(final String fileId, final ByteBuffer fileData) throws IOException {
+		Path target = resolve(fileId);
+		Path temp = createTemp(target);
+		boolean written = false;
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				if (fileData.isDirect()) {
+					while (fileData.hasRemaining()) {
+						channel.write(fileData);
+					}
+				} else {
+					write(channel, fileData);
+				}
+				if (this.sync) {
+					channel.force(false);
+				}
+			}
+			replace(temp, target);
+			written = true;
+		} finally {
+			if (!written) {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+	/**
+	 * Writes a heap buffer through the thread write buffer, as the channel
+	 * would otherwise copy it into a temporary direct buffer as large as the
+	 * file.
+	 */
+	private static void write(final FileChannel channel, final ByteBuffer fileData) throws IOException {
+		ByteBuffer buffer = WRITE_BUFFER.get();
+		while (fileData.hasRemaining()) {
+			buffer.clear();
+			int length = Math.min(buffer.remaining(), fileData.remaining());
+			ByteBuffer chunk = fileData.duplicate();
+			chunk.limit(chunk.position() + length);
+			buffer.put(chunk);
+			fileData.position(fileData.position() + length);
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Checks that a file fits in an array or a buffer.
+	 */
+	private static int checkSize(final String fileId, final long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("File %s is too large to load (%d bytes)", fileId, size));
+		}
+		return (int) size;
+	}
+
+	private static Path createTemp(final Path target) throws IOException {
+		Path parent = Files.createDirectories(target.getParent());
+		return Files.createTempFile(parent, TEMP_PREFIX + target.getFileName() + '.', TEMP_SUFFIX);
+	}
+
+	private static void replace(final Path temp, final Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Reads a buffer.
+	 */
+	private static final class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		BufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int length = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, length);
+			return length;
+		}
+
+		@Override
+		public long skip(final long n) {
+			int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+			this.buffer.position(this.buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package eu.rageproject.asset.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Minimal perfect hash of a fixed set of strings.
+ *
+ * <p>
+ * Maps each of the {@code n} keys it is built from to a distinct slot in
+ * {@code [0, n)}, so values can be stored in plain arrays without empty
+ * slots. Keys are spread over buckets and each bucket gets a displacement
+ * that places all its keys in free slots (hash and displace). A lookup
+ * hashes the key once, reads one displacement and compares one key.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * Instances are immutable and thread-safe.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+final class PerfectHashIndex {
+
+	/**
+	 * Average number of keys per bucket.
+	 */
+	private static final int BUCKET_SIZE = 4;
+
+	private static final int MAX_DISPLACEMENT = 1 << 20;
+
+	private static final int MAX_SEEDS = 16;
+
+	private final String[] keys;
+
+	private final int[] displacements;
+
+	private final long seed;
+
+	private PerfectHashIndex(final String[] keys, final int[] displacements, final long seed) {
+		this.keys = keys;
+		this.displacements = displacements;
+		this.seed = seed;
+	}
+
+	/**
+	 * Builds the index of a set of keys.
+	 *
+	 * @param keys
+	 *            The keys, must be distinct.
+	 *
+	 * @return the index.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the keys are not distinct.
+	 */
+	static PerfectHashIndex build(final String[] keys) {
+		if (new HashSet<>(Arrays.asList(keys)).size() != keys.length) {
+			throw new IllegalArgumentException("Keys must be distinct");
+		}
+		for (long seed = 0; seed < MAX_SEEDS; seed++) {
+			PerfectHashIndex index = tryBuild(keys, seed);
+			if (index != null) {
+				return index;
+			}
+		}
+		throw new IllegalStateException(String.format("Unable to build a perfect hash of %d keys", keys.length));
+	}
+
+	private static PerfectHashIndex tryBuild(final String[] keys, final long seed) {
+		final int n = keys.length;
+		int bucketCount = Math.max(1, (n + BUCKET_SIZE - 1) / BUCKET_SIZE);
+
+		long[] hashes = new long[n];
+		List<List<Integer>> buckets = new ArrayList<>(bucketCount);
+		for (int b = 0; b < bucketCount; b++) {
+			buckets.add(new ArrayList<Integer>(BUCKET_SIZE));
+		}
+		for (int i = 0; i < n; i++) {
+			hashes[i] = hash(keys[i], seed);
+			buckets.get(bucket(hashes[i], bucketCount)).add(i);
+		}
+
+		Integer[] order = new Integer[bucketCount];
+		for (int b = 0; b < bucketCount; b++) {
+			order[b] = b;
+		}
+		final List<List<Integer>> sorted = buckets;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return sorted.get(b).size() - sorted.get(a).size();
+			}
+		});
+
+		String[] table = new String[n];
+		int[] displacements = new int[bucketCount];
+		int[] slots = new int[BUCKET_SIZE * 4];
+		for (Integer b : order) {
+			List<Integer> bucket = buckets.get(b);
+			if (bucket.isEmpty()) {
+				break;
+			}
+			if (slots.length < bucket.size()) {
+				slots = new int[bucket.size()];
+			}
+
+			int displacement = 0;
+			while (!fits(bucket, hashes, displacement, table, slots)) {
+				if (++displacement == MAX_DISPLACEMENT) {
+					return null;
+				}
+			}
+
+			displacements[b] = displacement;
+			for (int i = 0; i < bucket.size(); i++) {
+				table[slots[i]] = keys[bucket.get(i)];
+			}
+		}
+
+		return new PerfectHashIndex(table, displacements, seed);
+	}
+
+	/**
+	 * Checks if all the keys of a bucket land in distinct free slots.
+	 */
+	private static boolean fits(final List<Integer> bucket, final long[] hashes, final int displacement,
+			final String[] table, final int[] slots) {
+		for (int i = 0; i < bucket.size(); i++) {
+			int slot = slot(hashes[bucket.get(i)], displacement, table.length);
+			if (table[slot] != null) {
+				return false;
+			}
+			for (int j = 0; j < i; j++) {
+				if (slots[j] == slot) {
+					return false;
+				}
+			}
+			slots[i] = slot;
+		}
+		return true;
+	}
+
+	/**
+	 * Number of keys and slots.
+	 *
+	 * @return the size of the index.
+	 */
+	int size() {
+		return this.keys.length;
+	}
+
+	/**
+	 * Gets the key stored in a slot.
+	 *
+	 * @param slot
+	 *            The slot.
+	 *
+	 * @return the key.
+	 */
+	String keyAt(final int slot) {
+		return this.keys[slot];
+	}
+
+	/**
+	 * Gets the slot of a key.
+	 *
+	 * @param key
+	 *            The key to search for.
+	 *
+	 * @return the slot in {@code [0, size())} or {@code -1} if {@code key} is
+	 *         not one of the indexed keys.
+	 */
+	int indexOf(final String key) {
+		int n = this.keys.length;
+		if (n == 0 || key == null) {
+			return -1;
+		}
+		long hash = hash(key, this.seed);
+		int slot = slot(hash, this.displacements[bucket(hash, this.displacements.length)], n);
+		return key.equals(this.keys[slot]) ? slot : -1;
+	}
+
+	private static int bucket(final long hash, final int bucketCount) {
+		return (int) (hash >>> 33) % bucketCount;
+	}
+
+	private static int slot(final long hash, final int displacement, final int n) {
+		return (int) (mix(hash + displacement * 0x9E3779B97F4A7C15L) >>> 33) % n;
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the characters of a string.
+	 */
+	private static long hash(final String key, final long seed) {
+		long hash = 0xcbf29ce484222325L ^ seed;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * MurmurHash3 64 bit finalizer.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -29,6 +29,13 @@ public class PubSubz {
 		INSTANCE = instance;
 	}
 	
+	/**
+	 * Creates an event bus independent of the global one.
+	 */
+	static final PubSubz createInstance() {
+		return new PubSubz();
+	}
+	
 	private int subUid;
 	
 	private Map<String, Map<String, TopicEvent>> topics;
@@ -2,6 +2,8 @@ package eu.rageproject.asset.manager;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,6 +14,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlValue;
 
 /**
@@ -34,6 +37,12 @@ import javax.xml.bind.annotation.XmlValue;
     </version>
     }
  * 
+ * <strong>IMPLEMENTATION NOTE</strong>
+ * 
+ * The instances returned by {@link #getVersionInfo(Class)} are shared by all
+ * the assets of a class and are read-only: their setters throw an
+ * {@link UnsupportedOperationException}.
+ * 
  * @author Ivan Martinez-Ortiz
  *
  */
@@ -41,6 +50,23 @@ import javax.xml.bind.annotation.XmlValue;
 @XmlRootElement(name = "version")
 public class RageVersionInfo {
 
+	/**
+	 * Suffix of the names of the classes generated from the
+	 * <code>&lt;AssetType&gt;.VersionAndDependencies.xml</code> resources.
+	 */
+	static final String GENERATED_SUFFIX = "VersionAndDependencies";
+
+	/**
+	 * Read-only version information by asset class.
+	 */
+	private static final ClassValue<RageVersionInfo> CACHE = new ClassValue<RageVersionInfo>() {
+		@Override
+		protected RageVersionInfo computeValue(final Class<?> type) {
+			RageVersionInfo info = loadGeneratedVersionInfo(type);
+			return (info != null ? info : loadVersionInfo(type)).readOnly();
+		}
+	};
+
 	@XmlElement(name = "id")
 	private String id;
 
@@ -63,6 +89,9 @@ public class RageVersionInfo {
 	@XmlElement(name = "depends")
 	private List<Dependency> dependencies;
 
+	@XmlTransient
+	private boolean readOnly;
+
 	/**
 	 * Initializes a new instance of the {@link #AssetManagerPackage
 	 * .RageVersionInfo} class.
@@ -81,6 +110,7 @@ public class RageVersionInfo {
 	}
 
 	public void setId(final String id) {
+		checkWritable();
 		this.id = id;
 	}
 
@@ -89,6 +119,7 @@ public class RageVersionInfo {
 	}
 
 	public void setMajor(final int major) {
+		checkWritable();
 		this.major = major;
 	}
 
@@ -97,6 +128,7 @@ public class RageVersionInfo {
 	}
 
 	public void setMinor(final int minor) {
+		checkWritable();
 		this.minor = minor;
 	}
 
@@ -105,6 +137,7 @@ public class RageVersionInfo {
 	}
 
 	public void setBuild(final int build) {
+		checkWritable();
 		this.build = build;
 	}
 
@@ -113,6 +146,7 @@ public class RageVersionInfo {
 	}
 
 	public void setRevision(final int revision) {
+		checkWritable();
 		this.revision = revision;
 	}
 
@@ -121,6 +155,7 @@ public class RageVersionInfo {
 	}
 
 	public void setMaturity(final String maturity) {
+		checkWritable();
 		this.maturity = maturity;
 	}
 
@@ -129,9 +164,61 @@ public class RageVersionInfo {
 	}
 
 	public void setDependencies(final List<Dependency> dependencies) {
+		checkWritable();
 		this.dependencies = dependencies;
 	}
 
+	private void checkWritable() {
+		if (this.readOnly) {
+			throw new UnsupportedOperationException("Shared version information is read-only");
+		}
+	}
+
+	/**
+	 * Makes this version information read-only.
+	 */
+	private RageVersionInfo readOnly() {
+		List<Dependency> dependencies = new ArrayList<>();
+		if (this.dependencies != null) {
+			for (Dependency dependency : this.dependencies) {
+				dependency.readOnly = true;
+				dependencies.add(dependency);
+			}
+		}
+		this.dependencies = Collections.unmodifiableList(dependencies);
+		this.readOnly = true;
+		return this;
+	}
+
+	/**
+	 * Checks if this version information is read-only.
+	 * 
+	 * @return {@code true} if it is shared and cannot be modified.
+	 */
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
+	/**
+	 * Gets the version information embedded next to an asset class.
+	 * 
+	 * <p>
+	 * The information is loaded once per class and shared by all its callers.
+	 * It is read from the class generated from the XML resource at build time
+	 * if there is one, or parsed from the XML resource otherwise (see
+	 * {@link #loadVersionInfo(Class)}).
+	 * </p>
+	 * 
+	 * @param clazz
+	 *            The asset class.
+	 * 
+	 * @return the read-only version info or an empty one if the class has no
+	 *         embedded version information.
+	 */
+	public static RageVersionInfo getVersionInfo(final Class<?> clazz) {
+		return CACHE.get(clazz);
+	}
+
 	/**
 	 * Loads version information..
 	 * 
@@ -145,6 +232,46 @@ public class RageVersionInfo {
 		return info;
 	}
 
+	/**
+	 * Loads the version information embedded next to an asset class, in the
+	 * <code>&lt;AssetType&gt;.VersionAndDependencies.xml</code> resource.
+	 * 
+	 * @param clazz
+	 *            The asset class.
+	 * 
+	 * @return the loaded version info or an empty one if the class has no
+	 *         embedded version information.
+	 */
+	public static RageVersionInfo loadVersionInfo(final Class<?> clazz) {
+		// read once per class, see getVersionInfo, so not worth caching
+		String xml = ResourceLoader.read(clazz, clazz.getSimpleName() + ".VersionAndDependencies.xml");
+		return xml.isEmpty() ? new RageVersionInfo() : loadVersionInfo(xml);
+	}
+
+	/**
+	 * Loads the version information generated at build time for an asset
+	 * class.
+	 * 
+	 * @param clazz
+	 *            The asset class.
+	 * 
+	 * @return the generated version info or {@code null} if no class was
+	 *         generated for <code>clazz</code>.
+	 */
+	static RageVersionInfo loadGeneratedVersionInfo(final Class<?> clazz) {
+		String name = clazz.getName();
+		String generated = name.substring(0, name.lastIndexOf('.') + 1) + clazz.getSimpleName()
+				+ GENERATED_SUFFIX;
+		try {
+			Class<?> type = Class.forName(generated, true, clazz.getClassLoader());
+			return (RageVersionInfo) type.getMethod("create").invoke(null);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalStateException(String.format("Invalid generated version information %s", generated), e);
+		}
+	}
+
 	/**
 	 * Saves the version information.
 	 * 
@@ -180,6 +307,9 @@ public class RageVersionInfo {
 		
 		@XmlValue
 		private String name;
+
+		@XmlTransient
+		private boolean readOnly;
 		
 		/**
 		 * Initializes a new dependency
@@ -187,11 +317,18 @@ public class RageVersionInfo {
 		public Dependency() {
 		}
 
+		private void checkWritable() {
+			if (this.readOnly) {
+				throw new UnsupportedOperationException("Shared version information is read-only");
+			}
+		}
+
 		public String getMinVersion() {
 			return minVersion;
 		}
 
 		public void setMinVersion(final String minVersion) {
+			checkWritable();
 			this.minVersion = minVersion;
 		}
 
@@ -200,6 +337,7 @@ public class RageVersionInfo {
 		}
 
 		public void setMaxVersion(final String maxVersion) {
+			checkWritable();
 			this.maxVersion = maxVersion;
 		}
 
@@ -208,6 +346,7 @@ public class RageVersionInfo {
 		}
 
 		public void setName(final String name) {
+			checkWritable();
 			this.name = name;
 		}
 	}
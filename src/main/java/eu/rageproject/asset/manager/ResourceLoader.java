@@ -0,0 +1,326 @@
+package eu.rageproject.asset.manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads embedded (classpath) text resources.
+ *
+ * <p>
+ * Resources are read into a per-thread reusable byte buffer, decoded as
+ * UTF-8 and cached per (class, resource) in a least recently used cache,
+ * bounded by the number of characters of the cached resources and their
+ * paths. Missing resources are cached too, as empty strings; resources
+ * larger than the whole cache are not cached.
+ * </p>
+ *
+ * <p>
+ * The cache only weakly references the classes, so it does not keep their
+ * class loaders alive; the entries of collected classes are discarded.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class ResourceLoader {
+
+	/**
+	 * Default maximum number of cached characters.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	/**
+	 * Largest read buffer kept for the next read of the thread.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+	private static volatile ResourceLoader INSTANCE;
+
+	/**
+	 * Read buffer of the current thread, grown on demand up to
+	 * {@link #MAX_RETAINED_BUFFER_SIZE}.
+	 */
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[INITIAL_BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Gets the process-wide {@link ResourceLoader}.
+	 *
+	 * @return the global resource loader.
+	 */
+	public static ResourceLoader getInstance() {
+		ResourceLoader instance = INSTANCE;
+		if (instance == null) {
+			synchronized (ResourceLoader.class) {
+				instance = INSTANCE;
+				if (instance == null) {
+					instance = new ResourceLoader(DEFAULT_CAPACITY);
+					ResourceLoader.INSTANCE = instance;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Cached resources, least recently used first.
+	 */
+	private final Map<Key, String> cache;
+
+	private final int capacity;
+
+	/**
+	 * Characters of the cached resources and their paths. Guarded by
+	 * {@link #cache}.
+	 */
+	private long characters;
+
+	/**
+	 * Keys of collected classes.
+	 */
+	private final ReferenceQueue<Class<?>> collected;
+
+	private final AtomicLong hits;
+
+	private final AtomicLong misses;
+
+	/**
+	 * Initializes a loader.
+	 *
+	 * @param capacity
+	 *            The maximum number of cached characters, of the resources
+	 *            and of their paths.
+	 */
+	public ResourceLoader(final int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+		}
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+		this.capacity = capacity;
+		this.collected = new ReferenceQueue<>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Gets a resource from a package.
+	 *
+	 * @param clazz
+	 *            The class whose class loader loads the resource.
+	 * @param pkg
+	 *            The package name.
+	 * @param res
+	 *            The resource name.
+	 *
+	 * @return the resource content or an empty string if there is no such
+	 *         resource.
+	 */
+	public String getEmbeddedResource(final Class<?> clazz, final String pkg, final String res) {
+		StringBuilder path = new StringBuilder(pkg.length() + res.length() + 2).append('/');
+		for (int i = 0; i < pkg.length(); i++) {
+			char c = pkg.charAt(i);
+			path.append(c == '.' ? '/' : c);
+		}
+		return getResource(clazz, path.append('/').append(res).toString());
+	}
+
+	/**
+	 * Gets a resource.
+	 *
+	 * @param clazz
+	 *            The class the resource is loaded through.
+	 * @param path
+	 *            The resource path, absolute or relative to the package of
+	 *            <code>clazz</code> (see {@link Class#getResource(String)}).
+	 *
+	 * @return the resource content or an empty string if there is no such
+	 *         resource.
+	 */
+	public String getResource(final Class<?> clazz, final String path) {
+		Key key = new Key(clazz, path, null);
+		String content;
+		synchronized (this.cache) {
+			expungeCollected();
+			content = this.cache.get(key);
+		}
+		if (content != null) {
+			this.hits.incrementAndGet();
+			return content;
+		}
+
+		this.misses.incrementAndGet();
+		content = read(clazz, path);
+		synchronized (this.cache) {
+			Key cached = new Key(clazz, path, this.collected);
+			String previous = this.cache.put(cached, content);
+			if (previous != null) {
+				this.characters -= weight(cached, previous);
+			}
+			this.characters += weight(cached, content);
+			// the least recently used first, the new resource last
+			Iterator<Map.Entry<Key, String>> entries = this.cache.entrySet().iterator();
+			while (this.characters > this.capacity && entries.hasNext()) {
+				Map.Entry<Key, String> eldest = entries.next();
+				this.characters -= weight(eldest.getKey(), eldest.getValue());
+				entries.remove();
+			}
+		}
+		return content;
+	}
+
+	private static long weight(final Key key, final String content) {
+		return key.path.length() + content.length();
+	}
+
+	/**
+	 * Removes the entries of collected classes. Must be called holding the
+	 * cache lock.
+	 */
+	private void expungeCollected() {
+		for (Object key = this.collected.poll(); key != null; key = this.collected.poll()) {
+			String content = this.cache.remove(key);
+			if (content != null) {
+				this.characters -= weight((Key) key, content);
+			}
+		}
+	}
+
+	/**
+	 * Reads a resource without caching it.
+	 *
+	 * @param clazz
+	 *            The class the resource is loaded through.
+	 * @param path
+	 *            The resource path, see {@link #getResource(Class, String)}.
+	 *
+	 * @return the resource content or an empty string if there is no such
+	 *         resource.
+	 *
+	 * @throws IllegalStateException
+	 *             if the resource exists but cannot be read.
+	 */
+	public static String read(final Class<?> clazz, final String path) {
+		try (InputStream in = clazz.getResourceAsStream(path)) {
+			if (in == null) {
+				return "";
+			}
+			byte[] buffer = BUFFER.get();
+			int size = 0;
+			int read;
+			while ((read = in.read(buffer, size, buffer.length - size)) != -1) {
+				size += read;
+				if (size == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+					if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+						BUFFER.set(buffer);
+					}
+				}
+			}
+			return new String(buffer, 0, size, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Unable to read resource %s", path), e);
+		}
+	}
+
+	/**
+	 * Number of lookups answered from the cache.
+	 *
+	 * @return the hit count.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Number of lookups that read the resource.
+	 *
+	 * @return the miss count.
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Number of cached resources.
+	 *
+	 * @return the cache size.
+	 */
+	public int size() {
+		synchronized (this.cache) {
+			expungeCollected();
+			return this.cache.size();
+		}
+	}
+
+	/**
+	 * Number of cached characters, of the resources and of their paths.
+	 *
+	 * @return the cache weight.
+	 */
+	public long getCachedCharacters() {
+		synchronized (this.cache) {
+			expungeCollected();
+			return this.characters;
+		}
+	}
+
+	/**
+	 * Discards the cached resources.
+	 */
+	public void clear() {
+		synchronized (this.cache) {
+			this.cache.clear();
+			this.characters = 0;
+		}
+	}
+
+	/**
+	 * A resource of a weakly referenced class.
+	 */
+	private static final class Key extends WeakReference<Class<?>> {
+
+		private final String path;
+
+		private final int hash;
+
+		Key(final Class<?> clazz, final String path, final ReferenceQueue<Class<?>> queue) {
+			super(clazz, queue);
+			this.path = path;
+			this.hash = 31 * clazz.hashCode() + path.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			Class<?> clazz = get();
+			return clazz != null && clazz == other.get() && this.path.equals(other.path);
+		}
+	}
+}
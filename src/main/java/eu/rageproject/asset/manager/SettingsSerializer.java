@@ -0,0 +1,264 @@
+package eu.rageproject.asset.manager;
+
+import java.beans.Introspector;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Serializes {@link ISettings} to and from XML.
+ *
+ * <p>
+ * Produces the same XML as the {@link javax.xml.bind.JAXB} helpers, but
+ * creates a single {@link JAXBContext} per settings class and reuses a
+ * {@link Marshaller} and an {@link Unmarshaller} per class and thread,
+ * instead of creating them on every call.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe. ISettings implementations must be annotated and
+ * support JAXB required contracts to marshall and unmarshall classes.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class SettingsSerializer {
+
+	private static final SettingsSerializer INSTANCE = new SettingsSerializer();
+
+	/**
+	 * Gets the process-wide {@link SettingsSerializer}.
+	 *
+	 * @return the settings serializer.
+	 */
+	public static SettingsSerializer getInstance() {
+		return INSTANCE;
+	}
+
+	private final ClassValue<Binding> bindings;
+
+	private SettingsSerializer() {
+		this.bindings = new ClassValue<Binding>() {
+			@Override
+			protected Binding computeValue(final Class<?> type) {
+				return new Binding(type);
+			}
+		};
+	}
+
+	/**
+	 * Unmarshals settings.
+	 *
+	 * @param xml
+	 *            The XML representation.
+	 * @param type
+	 *            The settings class.
+	 *
+	 * @return the settings.
+	 *
+	 * @throws DataBindingException
+	 *             if the XML cannot be unmarshalled.
+	 */
+	public <T extends ISettings> T fromXml(final String xml, final Class<T> type) {
+		return read(new StringReader(xml), type);
+	}
+
+	/**
+	 * Unmarshals settings.
+	 *
+	 * @param reader
+	 *            The XML representation, not closed.
+	 * @param type
+	 *            The settings class.
+	 *
+	 * @return the settings.
+	 *
+	 * @throws DataBindingException
+	 *             if the XML cannot be unmarshalled.
+	 */
+	public <T extends ISettings> T read(final Reader reader, final Class<T> type) {
+		try {
+			return this.bindings.get(type).unmarshaller.get().unmarshal(new StreamSource(reader), type).getValue();
+		} catch (JAXBException e) {
+			throw new DataBindingException(e);
+		}
+	}
+
+	/**
+	 * Unmarshals settings.
+	 *
+	 * @param in
+	 *            The XML representation, not closed.
+	 * @param type
+	 *            The settings class.
+	 *
+	 * @return the settings.
+	 *
+	 * @throws DataBindingException
+	 *             if the XML cannot be unmarshalled.
+	 */
+	public <T extends ISettings> T read(final InputStream in, final Class<T> type) {
+		// the XML parser closes its input
+		InputStream unclosed = new FilterInputStream(in) {
+			@Override
+			public void close() {
+			}
+		};
+		try {
+			return this.bindings.get(type).unmarshaller.get().unmarshal(new StreamSource(unclosed), type).getValue();
+		} catch (JAXBException e) {
+			throw new DataBindingException(e);
+		}
+	}
+
+	/**
+	 * Marshals settings.
+	 *
+	 * @param settings
+	 *            The settings.
+	 *
+	 * @return the XML representation.
+	 *
+	 * @throws DataBindingException
+	 *             if the settings cannot be marshalled.
+	 */
+	public String toXml(final ISettings settings) {
+		StringWriter writer = new StringWriter();
+		write(settings, writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Marshals settings.
+	 *
+	 * @param settings
+	 *            The settings.
+	 * @param writer
+	 *            Where to write the XML representation, not closed.
+	 *
+	 * @throws DataBindingException
+	 *             if the settings cannot be marshalled.
+	 */
+	public void write(final ISettings settings, final Writer writer) {
+		Binding binding = this.bindings.get(settings.getClass());
+		try {
+			binding.marshaller.get().marshal(binding.element(settings), writer);
+		} catch (JAXBException e) {
+			throw new DataBindingException(e);
+		}
+	}
+
+	/**
+	 * Marshals settings as UTF-8 encoded XML.
+	 *
+	 * @param settings
+	 *            The settings.
+	 * @param out
+	 *            Where to write the XML representation, not closed.
+	 *
+	 * @throws DataBindingException
+	 *             if the settings cannot be marshalled.
+	 */
+	public void write(final ISettings settings, final OutputStream out) {
+		Binding binding = this.bindings.get(settings.getClass());
+		try {
+			binding.marshaller.get().marshal(binding.element(settings), out);
+		} catch (JAXBException e) {
+			throw new DataBindingException(e);
+		}
+	}
+
+	/**
+	 * Gets the JAXB context of a settings class.
+	 */
+	JAXBContext getContext(final Class<?> type) {
+		return this.bindings.get(type).context;
+	}
+
+	/**
+	 * Gets the marshaller of a settings class for the current thread.
+	 */
+	Marshaller getMarshaller(final Class<?> type) {
+		return this.bindings.get(type).marshaller.get();
+	}
+
+	/**
+	 * Gets the unmarshaller of a settings class for the current thread.
+	 */
+	Unmarshaller getUnmarshaller(final Class<?> type) {
+		return this.bindings.get(type).unmarshaller.get();
+	}
+
+	/**
+	 * JAXB context of a settings class and its thread-confined
+	 * (un)marshallers.
+	 */
+	private static final class Binding {
+
+		private final Class<?> type;
+
+		private final JAXBContext context;
+
+		private final boolean rootElement;
+
+		private final QName name;
+
+		final ThreadLocal<Marshaller> marshaller;
+
+		final ThreadLocal<Unmarshaller> unmarshaller;
+
+		Binding(final Class<?> type) {
+			this.type = type;
+			try {
+				this.context = JAXBContext.newInstance(type);
+			} catch (JAXBException e) {
+				throw new DataBindingException(e);
+			}
+			this.rootElement = type.isAnnotationPresent(XmlRootElement.class);
+			// same element name as JAXB.marshal for classes that are not root elements
+			this.name = new QName(Introspector.decapitalize(type.getSimpleName()));
+			this.marshaller = new ThreadLocal<Marshaller>() {
+				@Override
+				protected Marshaller initialValue() {
+					try {
+						Marshaller marshaller = context.createMarshaller();
+						marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+						return marshaller;
+					} catch (JAXBException e) {
+						throw new DataBindingException(e);
+					}
+				}
+			};
+			this.unmarshaller = new ThreadLocal<Unmarshaller>() {
+				@Override
+				protected Unmarshaller initialValue() {
+					try {
+						return context.createUnmarshaller();
+					} catch (JAXBException e) {
+						throw new DataBindingException(e);
+					}
+				}
+			};
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Object element(final ISettings settings) {
+			return this.rootElement ? settings : new JAXBElement(this.name, this.type, settings);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package eu.rageproject.asset.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads asset settings when their files change.
+ *
+ * <p>
+ * Directories are watched with a {@link WatchService} of the default file
+ * system. When a watched file is created or modified,
+ * {@link BaseAsset#reloadSettings(String)} is called on the watcher thread.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe. A file may change several times per write, and
+ * a reload may read it half written; reloads of unchanged data are skipped
+ * and the ones that fail to decode are logged, the next change reloads the
+ * complete file. Watched assets are only weakly referenced: once an asset is
+ * collected its files are no longer watched.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class SettingsWatcher implements Closeable {
+
+	private static final Logger log = Logger.getLogger(AssetManager.LOGGER_KEY);
+
+	private static volatile SettingsWatcher INSTANCE;
+
+	/**
+	 * Gets the process-wide {@link SettingsWatcher}, started on first use.
+	 *
+	 * @return the global settings watcher.
+	 *
+	 * @throws IOException
+	 *             if the watch service cannot be created.
+	 */
+	public static SettingsWatcher getInstance() throws IOException {
+		SettingsWatcher instance = INSTANCE;
+		if (instance == null) {
+			synchronized (SettingsWatcher.class) {
+				instance = INSTANCE;
+				if (instance == null) {
+					instance = new SettingsWatcher();
+					SettingsWatcher.INSTANCE = instance;
+				}
+			}
+		}
+		return instance;
+	}
+
+	private final WatchService service;
+
+	/**
+	 * Watched files by directory and file name. Guarded by this map.
+	 */
+	private final Map<Path, Map<Path, List<Watch>>> watches;
+
+	private final Map<Path, WatchKey> keys;
+
+	private final Thread thread;
+
+	/**
+	 * Initializes a watcher and starts its thread.
+	 *
+	 * @throws IOException
+	 *             if the watch service cannot be created.
+	 */
+	public SettingsWatcher() throws IOException {
+		this.service = FileSystems.getDefault().newWatchService();
+		this.watches = new HashMap<>();
+		this.keys = new HashMap<>();
+		this.thread = new Thread("settings-watcher") {
+			@Override
+			public void run() {
+				poll();
+			}
+		};
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Reloads the settings of an asset when a file changes.
+	 *
+	 * @param asset
+	 *            The asset, not kept from being collected.
+	 * @param file
+	 *            The watched file, of the default file system.
+	 * @param filename
+	 *            The file identifier passed to
+	 *            {@link BaseAsset#reloadSettings(String)}.
+	 *
+	 * @return a handle to stop watching the file.
+	 *
+	 * @throws IOException
+	 *             if the file directory cannot be watched.
+	 */
+	public Closeable watch(final BaseAsset asset, final Path file, final String filename) throws IOException {
+		Path absolute = file.toAbsolutePath().normalize();
+		final Path directory = absolute.getParent();
+		final Path name = absolute.getFileName();
+		final Watch watch = new Watch(asset, directory, name, filename);
+		synchronized (this.watches) {
+			if (!this.keys.containsKey(directory)) {
+				this.keys.put(directory, directory.register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY));
+				this.watches.put(directory, new HashMap<Path, List<Watch>>());
+			}
+			Map<Path, List<Watch>> files = this.watches.get(directory);
+			List<Watch> list = files.get(name);
+			if (list == null) {
+				list = new ArrayList<>(1);
+				files.put(name, list);
+			}
+			list.add(watch);
+		}
+		return new Closeable() {
+			@Override
+			public void close() {
+				unwatch(directory, name, watch);
+			}
+		};
+	}
+
+	/**
+	 * Stops watching all the files.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this.watches) {
+			this.watches.clear();
+			this.keys.clear();
+		}
+		this.service.close();
+	}
+
+	private void unwatch(final Path directory, final Path name, final Watch watch) {
+		synchronized (this.watches) {
+			Map<Path, List<Watch>> files = this.watches.get(directory);
+			if (files == null) {
+				return;
+			}
+			List<Watch> list = files.get(name);
+			if (list != null && list.remove(watch) && list.isEmpty()) {
+				files.remove(name);
+			}
+			if (files.isEmpty()) {
+				this.watches.remove(directory);
+				this.keys.remove(directory).cancel();
+			}
+		}
+	}
+
+	private void poll() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = this.service.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			Path directory = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					reload(directory, null);
+				} else {
+					reload(directory, (Path) event.context());
+				}
+			}
+			key.reset();
+		}
+	}
+
+	/**
+	 * Reloads the settings of a file, or of all the files of the directory if
+	 * <code>name</code> is {@code null}.
+	 */
+	private void reload(final Path directory, final Path name) {
+		List<Watch> watched = new ArrayList<>();
+		synchronized (this.watches) {
+			Map<Path, List<Watch>> files = this.watches.get(directory);
+			if (files == null) {
+				return;
+			}
+			if (name == null) {
+				for (List<Watch> list : files.values()) {
+					watched.addAll(list);
+				}
+			} else if (files.containsKey(name)) {
+				watched.addAll(files.get(name));
+			}
+		}
+		for (Watch watch : watched) {
+			BaseAsset asset = watch.asset.get();
+			if (asset == null) {
+				unwatch(watch.directory, watch.name, watch);
+				continue;
+			}
+			try {
+				if (asset.reloadSettings(watch.filename) && log.isLoggable(Level.FINE)) {
+					log.fine(String.format("Reloaded settings %s of %s", watch.filename, asset.getId()));
+				}
+			} catch (RuntimeException e) {
+				log.log(Level.WARNING, String.format("Unable to reload settings %s", watch.filename), e);
+			}
+		}
+	}
+
+	private static final class Watch {
+
+		final WeakReference<BaseAsset> asset;
+
+		final Path directory;
+
+		final Path name;
+
+		final String filename;
+
+		Watch(final BaseAsset asset, final Path directory, final Path name, final String filename) {
+			this.asset = new WeakReference<>(asset);
+			this.directory = directory;
+			this.name = name;
+			this.filename = filename;
+		}
+	}
+}
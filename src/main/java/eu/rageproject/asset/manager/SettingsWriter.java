@@ -0,0 +1,399 @@
+package eu.rageproject.asset.manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes settings to {@link IDataStorage}s on a background thread.
+ *
+ * <p>
+ * Writes are queued in order. A write of a file that is still queued
+ * replaces the queued data instead of queuing a second write, so only the
+ * last data saved is written and the futures of both saves complete when it
+ * is.
+ * </p>
+ *
+ * <p>
+ * Writes made directly to a storage are not ordered with the queued ones:
+ * {@link #flush(IDataStorage, String)} must be called before writing or
+ * reading a file that may have a write queued.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * This class is thread-safe. The writer thread is a daemon, queued writes
+ * are lost if the JVM exits without {@link #shutdown(long, TimeUnit)} being
+ * called; the global writer calls it from a shutdown hook.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class SettingsWriter {
+
+	private static final Logger log = Logger.getLogger(AssetManager.LOGGER_KEY);
+
+	/**
+	 * Time the global writer waits for queued writes when the JVM shuts down.
+	 */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+	private static volatile SettingsWriter INSTANCE;
+
+	/**
+	 * Gets the process-wide {@link SettingsWriter}. It is started on first use
+	 * and flushed when the JVM shuts down.
+	 *
+	 * @return the global settings writer.
+	 */
+	public static SettingsWriter getInstance() {
+		SettingsWriter instance = INSTANCE;
+		if (instance == null) {
+			synchronized (SettingsWriter.class) {
+				instance = INSTANCE;
+				if (instance == null) {
+					final SettingsWriter writer = new SettingsWriter();
+					Runtime.getRuntime().addShutdownHook(new Thread("settings-writer-shutdown") {
+						@Override
+						public void run() {
+							writer.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+						}
+					});
+					instance = writer;
+					SettingsWriter.INSTANCE = instance;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Queued writes, in order. Guarded by this map.
+	 */
+	private final Map<Key, Write> queue;
+
+	/**
+	 * Write in progress, if any. Guarded by {@link #queue}.
+	 */
+	private Write writing;
+
+	private final Thread thread;
+
+	private boolean shutdown;
+
+	/**
+	 * Initializes a writer and starts its thread.
+	 */
+	public SettingsWriter() {
+		this.queue = new LinkedHashMap<>();
+		this.thread = new Thread("settings-writer") {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queues a write.
+	 *
+	 * @param storage
+	 *            The storage to write to.
+	 * @param fileId
+	 *            The file identifier.
+	 * @param fileData
+	 *            The file content.
+	 *
+	 * @return a future completed once the data (or data saved later to the
+	 *         same file while this write was queued) is written. It fails
+	 *         with the exception thrown by the storage, if any.
+	 *
+	 * @throws RejectedExecutionException
+	 *             if the writer has been shut down.
+	 */
+	public Future<Boolean> save(final IDataStorage storage, final String fileId, final String fileData) {
+		return save(storage, fileId, fileData, null);
+	}
+
+	/**
+	 * Queues a write of bytes.
+	 *
+	 * @param fileData
+	 *            The file content, its remaining bytes are written and must not
+	 *            be modified.
+	 *
+	 * @see #save(IDataStorage, String, String)
+	 */
+	public Future<Boolean> save(final IStreamDataStorage storage, final String fileId, final ByteBuffer fileData) {
+		return save(storage, fileId, fileData, null);
+	}
+
+	/**
+	 * Queues a write.
+	 *
+	 * @param fileData
+	 *            The file content, a {@link String} or, for
+	 *            {@link IStreamDataStorage}s, a {@link ByteBuffer}.
+	 * @param onFailure
+	 *            Run on the writer thread if the storage fails, may be
+	 *            {@code null}. Replaces the callback of a queued write of the
+	 *            same file.
+	 *
+	 * @see #save(IDataStorage, String, String)
+	 */
+	Future<Boolean> save(final IDataStorage storage, final String fileId, final Object fileData,
+			final Runnable onFailure) {
+		Key key = new Key(storage, fileId);
+		synchronized (this.queue) {
+			if (this.shutdown) {
+				throw new RejectedExecutionException("The settings writer has been shut down");
+			}
+			Write write = this.queue.get(key);
+			if (write == null) {
+				write = new Write(key);
+				this.queue.put(key, write);
+				this.queue.notifyAll();
+			} else if (log.isLoggable(Level.FINEST)) {
+				log.finest(String.format("Coalescing writes of %s", fileId));
+			}
+			write.fileData = fileData;
+			write.onFailure = onFailure;
+			return write.future;
+		}
+	}
+
+	/**
+	 * Waits until the queued write and the write in progress of a file, if
+	 * any, are done, so the file can be written or read directly. Failed
+	 * writes are not reported, they are already logged and reported to their
+	 * futures.
+	 *
+	 * @param storage
+	 *            The storage of the file.
+	 * @param fileId
+	 *            The file identifier.
+	 */
+	public void flush(final IDataStorage storage, final String fileId) {
+		if (Thread.currentThread() == this.thread) {
+			// the writer would wait for itself
+			return;
+		}
+		Key key = new Key(storage, fileId);
+		Write writing;
+		Write queued;
+		synchronized (this.queue) {
+			writing = this.writing != null && this.writing.key.equals(key) ? this.writing : null;
+			queued = this.queue.get(key);
+		}
+		await(writing);
+		await(queued);
+	}
+
+	/**
+	 * Flushes a file of the global writer, if it has been started.
+	 *
+	 * @see #flush(IDataStorage, String)
+	 */
+	static void flushGlobal(final IDataStorage storage, final String fileId) {
+		SettingsWriter instance = INSTANCE;
+		if (instance != null) {
+			instance.flush(storage, fileId);
+		}
+	}
+
+	private static void await(final Write write) {
+		if (write == null) {
+			return;
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				write.future.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException | CancellationException e) {
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gets a future that is already completed.
+	 */
+	static Future<Boolean> completed(final boolean value) {
+		FutureTask<Boolean> future = new FutureTask<>(new Runnable() {
+			@Override
+			public void run() {
+			}
+		}, value);
+		future.run();
+		return future;
+	}
+
+	/**
+	 * Gets the number of queued writes.
+	 *
+	 * @return the number of files waiting to be written.
+	 */
+	public int getQueuedCount() {
+		synchronized (this.queue) {
+			return this.queue.size();
+		}
+	}
+
+	/**
+	 * Stops accepting writes and waits for the queued ones to be written.
+	 *
+	 * @param timeout
+	 *            The maximum time to wait.
+	 * @param unit
+	 *            The unit of <code>timeout</code>.
+	 *
+	 * @return {@code true} if all the queued writes were written,
+	 *         {@code false} if the timeout elapsed first.
+	 */
+	public boolean shutdown(final long timeout, final TimeUnit unit) {
+		synchronized (this.queue) {
+			this.shutdown = true;
+			this.queue.notifyAll();
+		}
+		try {
+			this.thread.join(Math.max(1, unit.toMillis(timeout)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		boolean flushed = !this.thread.isAlive();
+		if (!flushed) {
+			int pending;
+			synchronized (this.queue) {
+				pending = this.queue.size() + (this.writing != null ? 1 : 0);
+			}
+			if (pending > 0) {
+				log.warning(String.format("%d settings write(s) not flushed on shutdown", pending));
+			}
+		}
+		return flushed;
+	}
+
+	private void drain() {
+		while (true) {
+			Write write;
+			synchronized (this.queue) {
+				while (this.queue.isEmpty() && !this.shutdown) {
+					try {
+						this.queue.wait();
+					} catch (InterruptedException e) {
+						// only stops once shut down and drained
+					}
+				}
+				Iterator<Write> writes = this.queue.values().iterator();
+				if (!writes.hasNext()) {
+					return;
+				}
+				write = writes.next();
+				writes.remove();
+				this.writing = write;
+			}
+			try {
+				write.future.run();
+			} finally {
+				synchronized (this.queue) {
+					this.writing = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A file of a storage.
+	 */
+	private static final class Key {
+
+		private final IDataStorage storage;
+
+		private final String fileId;
+
+		Key(final IDataStorage storage, final String fileId) {
+			this.storage = storage;
+			this.fileId = fileId;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(this.storage) + this.fileId.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return this.storage == other.storage && this.fileId.equals(other.fileId);
+		}
+	}
+
+	/**
+	 * A queued write. Its data is only modified while it is queued.
+	 */
+	private final class Write implements Callable<Boolean> {
+
+		private final Key key;
+
+		final FutureTask<Boolean> future;
+
+		/**
+		 * A {@link String} or a {@link ByteBuffer}.
+		 */
+		Object fileData;
+
+		Runnable onFailure;
+
+		Write(final Key key) {
+			this.key = key;
+			this.future = new FutureTask<>(this);
+		}
+
+		@Override
+		public Boolean call() throws IOException {
+			Object fileData;
+			Runnable onFailure;
+			synchronized (queue) {
+				fileData = this.fileData;
+				onFailure = this.onFailure;
+			}
+			try {
+				if (fileData instanceof ByteBuffer) {
+					((IStreamDataStorage) this.key.storage).save(this.key.fileId, (ByteBuffer) fileData);
+				} else {
+					this.key.storage.save(this.key.fileId, (String) fileData);
+				}
+				return true;
+			} catch (IOException | RuntimeException | Error e) {
+				log.log(Level.WARNING, String.format("Unable to write settings %s", this.key.fileId), e);
+				if (onFailure != null) {
+					onFailure.run();
+				}
+				throw e;
+			}
+		}
+	}
+}
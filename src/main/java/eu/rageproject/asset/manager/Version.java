@@ -0,0 +1,253 @@
+package eu.rageproject.asset.manager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mimics required C#'s System.Version class functionality
+ *
+ * <p>
+ * The four components are packed in a single {@code long} whose natural
+ * order is the version order, so comparing two versions is a single
+ * primitive comparison. Each component is stored as a 16 bit field holding
+ * the component plus one, which makes unknown components (-1) sort before
+ * any known one. Components must therefore be in the range [-1, 65534].
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * Instances are immutable. {@link #parse(String)} caches the versions it
+ * parses, so parsing a known version string neither allocates nor parses.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class Version implements Comparable<Version> {
+
+	/**
+	 * Largest component value.
+	 */
+	public static final int MAX_COMPONENT = 0xfffe;
+
+	/**
+	 * Maximum number of cached version strings.
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	private static final ConcurrentMap<String, Version> CACHE = new ConcurrentHashMap<>();
+
+	private static final Version ZERO = new Version(0, 0);
+
+	/**
+	 * Packed components, with the sign bit flipped so signed comparison
+	 * orders versions.
+	 */
+	private final long key;
+
+	public Version() {
+		this(0, 0, -1, -1);
+	}
+
+	public Version(final int major, final int minor) {
+		this(major, minor, -1, -1);
+	}
+
+	public Version(final int major, final int minor, final int build) {
+		this(major, minor, build, -1);
+	}
+
+	public Version(final int major, final int minor, final int build, final int revision) {
+		this(pack(major, minor, build, revision));
+	}
+
+	private Version(final long key) {
+		this.key = key;
+	}
+
+	/**
+	 * Parses a version without going through the cache.
+	 *
+	 * @param version
+	 *            The version string, see {@link #parse(String)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a component is greater than {@link #MAX_COMPONENT}.
+	 */
+	public Version(final String version) {
+		this(doParse(version));
+	}
+
+	private static long pack(final int major, final int minor, final int build, final int revision) {
+		return (field(major) << 48 | field(minor) << 32 | field(build) << 16 | field(revision)) ^ Long.MIN_VALUE;
+	}
+
+	private static long field(final int component) {
+		if (component < -1 || component > MAX_COMPONENT) {
+			throw new IllegalArgumentException(String.format("Version component %d out of range", component));
+		}
+		return component + 1;
+	}
+
+	private int component(final int shift) {
+		return (int) (((this.key ^ Long.MIN_VALUE) >>> shift) & 0xffff) - 1;
+	}
+
+	/**
+	 * Parses <code>major.minor[.build[.revision]]</code>. Strings that are not
+	 * well formed parse as version 0.0, components that do not fit are
+	 * rejected.
+	 */
+	private static long doParse(final String version) {
+		int[] components = new int[] { -1, -1, -1, -1 };
+		int count = 0;
+		int value = -1;
+		int length = version.length();
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? version.charAt(i) : '.';
+			if (c >= '0' && c <= '9') {
+				value = (value == -1 ? 0 : value * 10) + (c - '0');
+				if (value > MAX_COMPONENT) {
+					throw new IllegalArgumentException(String.format("Version component out of range in %s", version));
+				}
+			} else if (c == '.' && value != -1 && count < components.length) {
+				components[count++] = value;
+				value = -1;
+			} else {
+				return ZERO.key;
+			}
+		}
+		if (count < 2) {
+			return ZERO.key;
+		}
+		return pack(components[0], components[1], components[2], components[3]);
+	}
+
+	/**
+	 * Parses a version string.
+	 *
+	 * @param version
+	 *            A <code>major.minor[.build[.revision]]</code> string.
+	 *            Strings that are not well formed parse as version 0.0.
+	 *
+	 * @return the version, shared with other callers parsing the same string.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a component is greater than {@link #MAX_COMPONENT}.
+	 */
+	public static Version parse(final String version) {
+		Version parsed = CACHE.get(version);
+		if (parsed == null) {
+			parsed = new Version(version);
+			if (CACHE.size() < CACHE_SIZE) {
+				Version cached = CACHE.putIfAbsent(version, parsed);
+				if (cached != null) {
+					parsed = cached;
+				}
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Unpacks a version.
+	 *
+	 * @param packed
+	 *            A value returned by {@link #toLong()}.
+	 *
+	 * @return the version.
+	 */
+	public static Version fromLong(final long packed) {
+		return new Version(packed);
+	}
+
+	/**
+	 * Packs this version in a {@code long} whose signed natural order is the
+	 * version order.
+	 *
+	 * @return the packed version.
+	 */
+	public long toLong() {
+		return this.key;
+	}
+
+	public int getMajor() {
+		return component(48);
+	}
+
+	public int getMinor() {
+		return component(32);
+	}
+
+	/**
+	 * @return the build, -1 if unknown.
+	 */
+	public int getBuild() {
+		return component(16);
+	}
+
+	/**
+	 * @return the revision, -1 if unknown.
+	 */
+	public int getRevision() {
+		return component(0);
+	}
+
+	/**
+	 * The components of Version in decreasing order of importance are:
+	 * major, minor, build, and revision. An unknown component is assumed to
+	 * be older than any known component. For example:
+	 *
+	 * <ul>
+	 * <li>Version 1.1 is older than version 1.1.0.</li>
+	 * <li>Version 1.1 is older than version 1.1.1.</li>
+	 * <li>Version 1.1 is older than version 1.1.2.3.</li>
+	 * <li>Version 1.1.2 is older than version 1.1.2.4.</li>
+	 * <li>Version 1.2.5 is newer than version 1.2.3.4.</li>
+	 *
+	 * @param v
+	 *            {@code Version} to compare to.
+	 *
+	 * @return -1 if this {@code Version} is older than {@code v}, 0 if
+	 *         this {@code Version} is the same than {@code v} and 1 if this
+	 *         {@code Version} is newer than {@code v} or {@code v} is
+	 *         {@code null}.
+	 * @throws ClassCastException
+	 */
+	@Override
+	public int compareTo(final Version v) throws ClassCastException {
+		if (v == null) {
+			return 1;
+		}
+		return Long.compare(this.key, v.key);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (this.key ^ (this.key >>> 32));
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Version other = (Version) obj;
+		return this.key == other.key;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(getMajor()).append('.').append(getMinor());
+		if (getBuild() != -1) {
+			builder.append('.').append(getBuild());
+		}
+		if (getRevision() != -1) {
+			builder.append('.').append(getRevision());
+		}
+		return builder.toString();
+	}
+}
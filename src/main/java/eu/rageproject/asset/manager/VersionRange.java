@@ -0,0 +1,169 @@
+package eu.rageproject.asset.manager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A precompiled, inclusive version range in min-max format, as used by
+ * {@link IAsset#getDependencies()}:
+ *
+ * <ul>
+ * <li>{@code 1.2.3-*} (1.2.3 or higher)</li>
+ * <li>{@code 0.0-*} (all versions)</li>
+ * <li>{@code 1.2.3-2.2} (1.2.3 or higher, and lower than or equal to 2.2)</li>
+ * <li>{@code 1.2.3} (exactly 1.2.3)</li>
+ * </ul>
+ *
+ * <p>
+ * The bounds are kept as packed versions (see {@link Version#toLong()}), so
+ * {@link #contains(Version)} is two primitive comparisons and allocates
+ * nothing.
+ * </p>
+ *
+ * <strong>IMPLEMENTATION NOTE</strong>
+ *
+ * Instances are immutable. {@link #parse(String)} caches the ranges it
+ * parses.
+ *
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class VersionRange {
+
+	/**
+	 * Maximum number of cached range strings.
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	private static final ConcurrentMap<String, VersionRange> CACHE = new ConcurrentHashMap<>();
+
+	private final String range;
+
+	private final boolean valid;
+
+	private final long low;
+
+	private final long high;
+
+	private VersionRange(final String range) {
+		this.range = range;
+		long low = Long.MAX_VALUE;
+		long high = Long.MIN_VALUE;
+		boolean valid = false;
+		int separator = range.indexOf('-');
+		try {
+			if (separator == -1) {
+				low = Version.parse(range).toLong();
+				high = low;
+				valid = true;
+			} else if (separator == range.lastIndexOf('-')) {
+				String upper = range.substring(separator + 1);
+				low = Version.parse(range.substring(0, separator)).toLong();
+				high = "*".equals(upper) ? Long.MAX_VALUE : Version.parse(upper).toLong();
+				valid = true;
+			}
+		} catch (IllegalArgumentException e) {
+			// a bound does not fit, the range contains no version
+			low = Long.MAX_VALUE;
+			high = Long.MIN_VALUE;
+		}
+		this.valid = valid;
+		this.low = low;
+		this.high = high;
+	}
+
+	/**
+	 * Parses a version range.
+	 *
+	 * @param range
+	 *            The range, see {@link VersionRange}.
+	 *
+	 * @return the range, shared with other callers parsing the same string.
+	 *         Ranges that are not well formed, or whose bounds have
+	 *         components greater than {@link Version#MAX_COMPONENT}, are
+	 *         {@link #isValid() invalid} and contain no version.
+	 */
+	public static VersionRange parse(final String range) {
+		VersionRange parsed = CACHE.get(range);
+		if (parsed == null) {
+			parsed = new VersionRange(range);
+			if (CACHE.size() < CACHE_SIZE) {
+				VersionRange cached = CACHE.putIfAbsent(range, parsed);
+				if (cached != null) {
+					parsed = cached;
+				}
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Checks if the range is well formed.
+	 *
+	 * @return {@code true} if the range is valid, {@code false} otherwise.
+	 */
+	public boolean isValid() {
+		return this.valid;
+	}
+
+	/**
+	 * Checks if a version is within the range.
+	 *
+	 * @param version
+	 *            The version.
+	 *
+	 * @return {@code true} if {@code version} is within the range.
+	 */
+	public boolean contains(final Version version) {
+		return contains(version.toLong());
+	}
+
+	/**
+	 * Checks if a packed version is within the range.
+	 *
+	 * @param version
+	 *            The version, as returned by {@link Version#toLong()}.
+	 *
+	 * @return {@code true} if {@code version} is within the range.
+	 */
+	public boolean contains(final long version) {
+		return this.low <= version && version <= this.high;
+	}
+
+	/**
+	 * @return the lowest version of the range, packed.
+	 */
+	public long getLow() {
+		return this.low;
+	}
+
+	/**
+	 * @return the highest version of the range, packed;
+	 *         {@link Long#MAX_VALUE} if it has no upper bound.
+	 */
+	public long getHigh() {
+		return this.high;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.range.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		VersionRange other = (VersionRange) obj;
+		return this.range.equals(other.range);
+	}
+
+	@Override
+	public String toString() {
+		return this.range;
+	}
+}
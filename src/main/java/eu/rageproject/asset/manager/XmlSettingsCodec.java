@@ -0,0 +1,53 @@
+package eu.rageproject.asset.manager;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes settings as XML with JAXB, see {@link SettingsSerializer}.
+ * 
+ * <strong>IMPLEMENTATION NOTE</strong>
+ * <p>
+ * ISettings implementations must be annotated and support JAXB required
+ * contracts to marshall and unmarshall classes.
+ * </p>
+ * 
+ * @author Ivan Martinez-Ortiz
+ *
+ */
+public final class XmlSettingsCodec implements ISettingsCodec {
+
+	private static final XmlSettingsCodec INSTANCE = new XmlSettingsCodec();
+
+	/**
+	 * Gets the XML codec.
+	 * 
+	 * @return the codec.
+	 */
+	public static XmlSettingsCodec getInstance() {
+		return INSTANCE;
+	}
+
+	private XmlSettingsCodec() {
+	}
+
+	@Override
+	public String encode(final ISettings settings) {
+		return SettingsSerializer.getInstance().toXml(settings);
+	}
+
+	@Override
+	public <T extends ISettings> T decode(final String data, final Class<T> type) {
+		return SettingsSerializer.getInstance().fromXml(data, type);
+	}
+
+	@Override
+	public void write(final ISettings settings, final OutputStream out) {
+		SettingsSerializer.getInstance().write(settings, out);
+	}
+
+	@Override
+	public <T extends ISettings> T read(final InputStream in, final Class<T> type) {
+		return SettingsSerializer.getInstance().read(in, type);
+	}
+}
@@ -1,7 +1,14 @@
 package eu.rageproject.asset.manager;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -9,12 +16,27 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.withSettings;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -81,6 +103,28 @@ public class AssetManagerTest {
 		assertThat(asset2.getDependencies().get("Logger"), equalTo("1.2.3-*"));
 	}
 
+	@Test
+	public void testStreamingVersionAndDependencyReport() throws IOException {
+		// Given
+		new Logger();
+		new DialogueAsset();
+		String eol = System.getProperty("line.separator");
+
+		// When
+		StringWriter json = new StringWriter();
+		AssetManager.getInstance().writeVersionAndDependenciesReport(json, AssetManager.ReportFormat.JSON_LINES);
+		StringWriter csv = new StringWriter();
+		AssetManager.getInstance().writeVersionAndDependenciesReport(csv, AssetManager.ReportFormat.CSV);
+
+		// Then
+		assertThat(json.toString().split(eol), equalTo(new String[] {
+				"{\"asset\":\"Logger\",\"version\":\"1.2.3\",\"dependencies\":[]}",
+				"{\"asset\":\"DialogueAsset\",\"version\":\"1.2.3.25\",\"dependencies\":"
+						+ "[{\"class\":\"Logger\",\"range\":\"0.0-*\",\"status\":\"resolved\"}]}" }));
+		assertThat(csv.toString().split(eol), equalTo(new String[] { "Asset,Version,Depends on,Range,Status",
+				"Logger,1.2.3,,,", "DialogueAsset,1.2.3.25,Logger,0.0-*,resolved" }));
+	}
+
 	@Test
 	public void testAssetToAssetCoordination() {
 		// Given
@@ -148,6 +192,440 @@ public class AssetManagerTest {
 		assertThat(id, equalTo("DemoAsset_0"));
 	}
 
+	@Test
+	public void testFindAssetsByClass() {
+		// Given
+		Logger asset1 = new Logger();
+		DemoAsset asset2 = new DemoAsset();
+		Logger asset3 = new Logger();
+
+		// When
+		List<IAsset> loggers = AssetManager.getInstance().findAssetsByClass("Logger");
+		Logger asset4 = new Logger();
+
+		// Then
+		// the snapshot keeps registration order and ignores later registrations
+		assertThat(loggers, contains((IAsset) asset1, asset3));
+		assertThat(AssetManager.getInstance().findAssetsByClass("Logger"), contains((IAsset) asset1, asset3, asset4));
+		assertThat(AssetManager.getInstance().findAssetsByClass("DemoAsset"), contains((IAsset) asset2));
+		assertThat(AssetManager.getInstance().findAssetsByClass("Unknown"), empty());
+		assertThat(AssetManager.getInstance().<Logger>findAssetByClass("Logger"), sameInstance(asset1));
+		assertThat(AssetManager.getInstance().<Logger>findAssetByClass("Unknown"), nullValue());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFindAssetsByClassIsImmutable() {
+		// Given
+		new Logger();
+
+		// When
+		AssetManager.getInstance().findAssetsByClass("Logger").clear();
+	}
+
+	@Test
+	public void testFindAssetsByType() {
+		// Given
+		Logger asset1 = new Logger();
+		DemoAsset asset2 = new DemoAsset();
+
+		// When
+		List<Logger> loggers = AssetManager.getInstance().findAssetsByType(Logger.class);
+		List<BaseAsset> assets = AssetManager.getInstance().findAssetsByType(BaseAsset.class);
+		Logger asset3 = new Logger();
+
+		// Then
+		// snapshots are cached until the next registration
+		assertThat(loggers, contains(asset1));
+		assertThat(assets, contains((BaseAsset) asset1, asset2));
+		assertThat(AssetManager.getInstance().findAssetsByType(Logger.class), contains(asset1, asset3));
+		assertThat(AssetManager.getInstance().findAssetsByType(IAsset.class).size(), equalTo(3));
+		assertThat(AssetManager.getInstance().findAssetsByType(ILogger.class), empty());
+		assertThat(AssetManager.getInstance().findAssetByType(DemoAsset.class), sameInstance(asset2));
+		assertThat(AssetManager.getInstance().findAssetByType(DialogueAsset.class), nullValue());
+	}
+
+	@Test
+	public void testUnregisterAsset() {
+		// Given
+		Logger asset1 = new Logger();
+		Logger asset2 = new Logger();
+		List<Logger> loggers = AssetManager.getInstance().findAssetsByType(Logger.class);
+
+		// When
+		asset1.close();
+
+		// Then
+		assertThat(AssetManager.getInstance().findAssetById(asset1.getId()), nullValue());
+		assertThat(AssetManager.getInstance().findAssetsByClass("Logger"), contains((IAsset) asset2));
+		assertThat(AssetManager.getInstance().findAssetsByType(Logger.class), contains(asset2));
+		assertThat(AssetManager.getInstance().unregisterAssetInstance(asset1), equalTo(false));
+		// snapshots taken before are not modified
+		assertThat(loggers, contains(asset1, asset2));
+	}
+
+	@Test
+	public void testWeakRegistryPurgesCollectedAssets() throws Exception {
+		// Given
+		AssetManager.getInstance().setWeakRegistry(true);
+		Logger asset1 = new Logger();
+		String id = new Logger().getId();
+
+		// When
+		for (int i = 0; i < 50 && AssetManager.getInstance().findAssetById(id) != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		// Then
+		assertThat(AssetManager.getInstance().findAssetById(id), nullValue());
+		assertThat(AssetManager.getInstance().findAssetsByClass("Logger"), contains((IAsset) asset1));
+		assertThat(AssetManager.getInstance().findAssetsByType(Logger.class), contains(asset1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testWeakRegistryModeCannotChangeOnceUsed() {
+		// Given
+		new Logger();
+
+		// When
+		AssetManager.getInstance().setWeakRegistry(true);
+	}
+
+	@Test
+	public void testScopesAreIndependent() {
+		// Given
+		AssetManager session1 = AssetManager.createScope();
+		AssetManager session2 = AssetManager.createScope();
+
+		// When
+		Logger global;
+		Logger logger1;
+		Logger logger2;
+		DialogueAsset dialogue2;
+		AssetManager.Scope scope = session1.enter();
+		try {
+			logger1 = new Logger();
+			AssetManager.Scope nested = session2.enter();
+			try {
+				logger2 = new Logger();
+				dialogue2 = new DialogueAsset();
+			} finally {
+				nested.close();
+			}
+		} finally {
+			scope.close();
+		}
+		global = new Logger();
+
+		// Then
+		// each scope has its own registry and identifier sequence
+		assertThat(logger1.getId(), equalTo("Logger_0"));
+		assertThat(logger2.getId(), equalTo("Logger_0"));
+		assertThat(global.getId(), equalTo("Logger_0"));
+		assertThat(dialogue2.getAssetManager(), sameInstance(session2));
+		assertThat(session1.findAssetsByType(IAsset.class), contains((IAsset) logger1));
+		assertThat(session2.findAssetsByType(IAsset.class), contains((IAsset) logger2, dialogue2));
+		assertThat(AssetManager.getInstance().findAssetsByType(IAsset.class), contains((IAsset) global));
+		assertThat(session1.getPubSubz(), not(sameInstance(session2.getPubSubz())));
+		assertThat(AssetManager.current(), sameInstance(AssetManager.getInstance()));
+	}
+
+	@Test
+	public void testLazyAssetFactories() {
+		// Given
+		final AtomicInteger created = new AtomicInteger();
+		String loggerId = AssetManager.getInstance().registerAssetFactory(Logger.class, new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				created.incrementAndGet();
+				return new Logger();
+			}
+		});
+		String dialogueId = AssetManager.getInstance().registerAssetFactory(DialogueAsset.class,
+				new IAssetFactory<DialogueAsset>() {
+					@Override
+					public DialogueAsset create() {
+						created.incrementAndGet();
+						return new DialogueAsset();
+					}
+				});
+
+		// When
+		int createdBeforeLookup = created.get();
+		IAsset dialogue = AssetManager.getInstance().findAssetById(dialogueId);
+
+		// Then
+		// nothing is created until it is looked up, dependencies of the
+		// created asset are created on demand
+		assertThat(createdBeforeLookup, equalTo(0));
+		assertThat(dialogue.getId(), equalTo("DialogueAsset_1"));
+		assertThat(created.get(), equalTo(2));
+		assertThat(AssetManager.getInstance().findAssetById(loggerId).getId(), equalTo("Logger_0"));
+		assertThat(AssetManager.getInstance().<Logger>findAssetByClass("Logger"),
+				sameInstance(AssetManager.getInstance().findAssetById(loggerId)));
+		assertThat(created.get(), equalTo(2));
+	}
+
+	@Test
+	public void testFailedLazyAssetsAreUnregistered() {
+		// Given
+		final List<Logger> created = new ArrayList<>();
+		String loggerId = AssetManager.getInstance().registerAssetFactory(Logger.class, new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				Logger logger = new Logger();
+				created.add(logger);
+				if (created.size() == 1) {
+					throw new IllegalStateException("Unable to configure Logger");
+				}
+				return logger;
+			}
+		});
+
+		// When
+		try {
+			AssetManager.getInstance().findAssetById(loggerId);
+			fail("Factory failures must be propagated");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// Then
+		// the half-built asset is not left registered, the next lookup
+		// creates the asset again
+		assertThat(AssetManager.getInstance().findAssetsByClass("Logger"), contains((IAsset) created.get(1)));
+		assertThat(created.size(), equalTo(2));
+		assertThat(created.get(1).getId(), equalTo(loggerId));
+	}
+
+	@Test
+	public void testFrozenRegistry() {
+		// Given
+		Logger asset1 = new Logger();
+		DemoAsset asset2 = new DemoAsset();
+		Logger asset3 = new Logger();
+		String lazyId = AssetManager.getInstance().registerAssetFactory(DialogueAsset.class,
+				new IAssetFactory<DialogueAsset>() {
+					@Override
+					public DialogueAsset create() {
+						return new DialogueAsset();
+					}
+				});
+
+		// When
+		AssetManager.getInstance().freeze();
+
+		// Then
+		// lazy assets are created before freezing
+		assertThat(AssetManager.getInstance().isFrozen(), equalTo(true));
+		assertThat(AssetManager.getInstance().findAssetById(lazyId).getId(), equalTo(lazyId));
+		assertThat(AssetManager.getInstance().findAssetById(asset2.getId()), sameInstance((IAsset) asset2));
+		assertThat(AssetManager.getInstance().findAssetById("Logger_99"), nullValue());
+		assertThat(AssetManager.getInstance().findAssetsByClass("Logger"), contains((IAsset) asset1, asset3));
+		assertThat(AssetManager.getInstance().findAssetsByClass("Unknown"), empty());
+		assertThat(AssetManager.getInstance().<Logger>findAssetByClass("Logger"), sameInstance(asset1));
+		assertThat(AssetManager.getInstance().findAssetsByType(Logger.class), contains(asset1, asset3));
+		// registered assets can still be re-registered
+		assertThat(AssetManager.getInstance().registerAssetInstance(asset1, "Logger"), equalTo(asset1.getId()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFrozenRegistryRejectsRegistrations() {
+		// Given
+		new Logger();
+		AssetManager.getInstance().freeze();
+
+		// When
+		new Logger();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFrozenRegistryRejectsUnregistrations() {
+		// Given
+		Logger asset = new Logger();
+		AssetManager.getInstance().freeze();
+
+		// When
+		asset.close();
+	}
+
+	@Test
+	public void testAssetsAreUnregisteredThroughTheInterface() {
+		// Given
+		IAsset asset = new StubAsset();
+		String id = AssetManager.getInstance().registerAssetInstance(asset, "StubAsset");
+
+		// When
+		asset.close();
+
+		// Then
+		assertThat(AssetManager.getInstance().findAssetById(id), nullValue());
+	}
+
+	@Test
+	public void testFindAssetByHandle() {
+		// Given
+		Logger asset1 = new Logger();
+		DemoAsset asset2 = new DemoAsset();
+
+		// When
+		int handle = AssetManager.getInstance().registerAssetHandle(asset2, "DemoAsset");
+
+		// Then
+		assertThat(handle, equalTo(asset2.getHandle()));
+		assertThat(AssetManager.getInstance().findAssetByHandle(asset1.getHandle()), sameInstance((IAsset) asset1));
+		assertThat(AssetManager.getInstance().findAssetByHandle(handle), sameInstance((IAsset) asset2));
+		assertThat(AssetManager.getInstance().findAssetByHandle(42), nullValue());
+		assertThat(AssetManager.getInstance().findAssetByHandle(-1), nullValue());
+		assertThat(AssetManager.getInstance().getAssetId(handle), equalTo("DemoAsset_1"));
+		// identifiers must match both the class name and the handle
+		assertThat(AssetManager.getInstance().findAssetById("DemoAsset_1"), sameInstance((IAsset) asset2));
+		assertThat(AssetManager.getInstance().findAssetById("Logger_1"), nullValue());
+		assertThat(AssetManager.getInstance().findAssetById("DemoAsset_01"), nullValue());
+		assertThat(AssetManager.getInstance().findAssetById("DemoAsset_"), nullValue());
+		assertThat(AssetManager.getInstance().findAssetById("DemoAsset"), nullValue());
+		assertThat(AssetManager.getInstance().findAssetById("Demo_Asset_1"), nullValue());
+	}
+
+	@Test
+	public void testFindCompatibleVersions() {
+		// Given
+		AssetManager cut = AssetManager.getInstance();
+		StubAsset v2 = new StubAsset("2.0");
+		StubAsset v1 = new StubAsset("1.0");
+		StubAsset v13 = new StubAsset("1.3");
+		StubAsset v123 = new StubAsset("1.2.3");
+		StubAsset v3 = new StubAsset("3.0.1");
+		for (StubAsset asset : Arrays.asList(v2, v1, v13, v123, v3)) {
+			cut.registerAssetInstance(asset, "StubAsset");
+		}
+
+		// When
+		cut.unregisterAssetInstance(v3);
+
+		// Then
+		assertThat(cut.<IAsset> findNewestCompatible("StubAsset", "1.2.3-2.2"), sameInstance((IAsset) v2));
+		assertThat(cut.<IAsset> findLowestCompatible("StubAsset", "1.2.3-2.2"), sameInstance((IAsset) v123));
+		assertThat(cut.findAllCompatible("StubAsset", "1.2.3-2.2"), contains((IAsset) v123, v13, v2));
+		assertThat(cut.findAllCompatible("StubAsset", "0.0-*"), contains((IAsset) v1, v123, v13, v2));
+		assertThat(cut.<IAsset> findNewestCompatible("StubAsset", "1.3"), sameInstance((IAsset) v13));
+		assertThat(cut.<IAsset> findNewestCompatible("StubAsset", "3.0-*"), nullValue());
+		assertThat(cut.<IAsset> findLowestCompatible("Unknown", "0.0-*"), nullValue());
+		assertThat(cut.findAllCompatible("StubAsset", "2.1-3.0").isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testConcurrentRegistration() throws Exception {
+		// Given
+		final int threads = 8;
+		final int assetsPerThread = 25;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Set<String> ids = new HashSet<>();
+
+		// When
+		try {
+			Future<?>[] results = new Future<?>[threads];
+			for (int i = 0; i < threads; i++) {
+				results[i] = executor.submit(new Callable<String[]>() {
+					@Override
+					public String[] call() {
+						String[] ids = new String[assetsPerThread];
+						for (int j = 0; j < assetsPerThread; j++) {
+							ids[j] = new Logger().getId();
+						}
+						return ids;
+					}
+				});
+			}
+			for (Future<?> result : results) {
+				for (String id : (String[]) result.get()) {
+					ids.add(id);
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		// Then
+		// no identifier is handed out twice and every asset can be found
+		assertThat(ids.size(), equalTo(threads * assetsPerThread));
+		for (String id : ids) {
+			assertThat(AssetManager.getInstance().findAssetById(id).getId(), equalTo(id));
+		}
+	}
+
+	@Test
+	public void testRegistrationProbesAreConstant() {
+		// Given
+		java.util.logging.Logger managerLog = java.util.logging.Logger.getLogger(AssetManager.LOGGER_KEY);
+		Level level = managerLog.getLevel();
+		managerLog.setLevel(Level.WARNING);
+
+		try {
+			// When
+			AssetManager small = AssetManager.createScope();
+			StubAsset[] smallStubs = registerStubAssets(small, 1000);
+			long smallProbes = small.getIdentityProbeCount();
+			AssetManager large = AssetManager.createScope();
+			StubAsset[] largeStubs = registerStubAssets(large, 16000);
+			long largeProbes = large.getIdentityProbeCount();
+			String reRegistered = large.registerAssetInstance(largeStubs[8000], "StubAsset");
+
+			// Then
+			// the duplicate check compares at most a few colliding assets, a
+			// scan of the registered assets would compare n * (n - 1) / 2
+			assertThat(smallProbes, lessThanOrEqualTo((long) smallStubs.length / 100));
+			assertThat(largeProbes, lessThanOrEqualTo((long) largeStubs.length / 100));
+			assertThat(reRegistered, equalTo("StubAsset_8000"));
+			assertThat(large.getIdentityProbeCount() - largeProbes, lessThanOrEqualTo(2L));
+			assertThat(large.findAssetsByClass("StubAsset").size(), equalTo(largeStubs.length));
+		} finally {
+			managerLog.setLevel(level);
+		}
+	}
+
+	@Test
+	public void testRegistrationScalesLinearly() {
+		Benchmark.assumeEnabled();
+
+		// Given
+		java.util.logging.Logger managerLog = java.util.logging.Logger.getLogger(AssetManager.LOGGER_KEY);
+		Level level = managerLog.getLevel();
+		managerLog.setLevel(Level.WARNING);
+
+		try {
+			// warm up
+			registerStubAssets(AssetManager.createScope(), 20000);
+
+			// When
+			long start = System.nanoTime();
+			registerStubAssets(AssetManager.createScope(), 10000);
+			long small = System.nanoTime() - start;
+			start = System.nanoTime();
+			registerStubAssets(AssetManager.createScope(), 80000);
+			long large = System.nanoTime() - start;
+
+			// Then
+			Benchmark.report("Registered 10000 assets in %d ms, 80000 assets in %d ms",
+					TimeUnit.NANOSECONDS.toMillis(small), TimeUnit.NANOSECONDS.toMillis(large));
+			// 8 times more assets must cost roughly 8 times more, a quadratic
+			// duplicate check would cost 64 times more
+			assertThat(large, lessThanOrEqualTo(32 * small + TimeUnit.MILLISECONDS.toNanos(250)));
+		} finally {
+			managerLog.setLevel(level);
+		}
+	}
+
+	private static StubAsset[] registerStubAssets(final AssetManager manager, final int count) {
+		StubAsset[] stubs = new StubAsset[count];
+		for (int i = 0; i < count; i++) {
+			stubs[i] = new StubAsset();
+			manager.registerAssetInstance(stubs[i], "StubAsset");
+		}
+		return stubs;
+	}
+
 	@Test
 	public void tetDialogueAsset() throws Exception {
 
@@ -170,6 +648,80 @@ public class AssetManagerTest {
 		asset.interact("me", "player");
 	}
 
+	/**
+	 * Minimal {@link eu.rageproject.asset.manager.IAsset} that is not
+	 * registered on construction.
+	 */
+	static class StubAsset implements IAsset {
+
+		private final String version;
+
+		private final AssetManager assetManager;
+
+		private IBridge bridge;
+
+		private ISettings settings;
+
+		StubAsset() {
+			this("1.0");
+		}
+
+		StubAsset(final String version) {
+			this.version = version;
+			this.assetManager = AssetManager.current();
+		}
+
+		@Override
+		public String getClassName() {
+			return "StubAsset";
+		}
+
+		@Override
+		public String getId() {
+			return null;
+		}
+
+		@Override
+		public Map<String, String> getDependencies() {
+			return new TreeMap<>();
+		}
+
+		@Override
+		public String getMaturity() {
+			return "alpha";
+		}
+
+		@Override
+		public ISettings getSettings() {
+			return this.settings;
+		}
+
+		@Override
+		public void setSettings(ISettings settings) {
+			this.settings = settings;
+		}
+
+		@Override
+		public String getVersion() {
+			return this.version;
+		}
+
+		@Override
+		public IBridge getBridge() {
+			return this.bridge;
+		}
+
+		@Override
+		public void setBridge(IBridge bridge) {
+			this.bridge = bridge;
+		}
+
+		@Override
+		public void close() {
+			this.assetManager.unregisterAssetInstance(this);
+		}
+	}
+
 	/**
 	 * Sample {@link eu.rageproject.asset.manager.IBridge} implementation
 	 */
@@ -181,6 +733,8 @@ public class AssetManagerTest {
 
 		private String prefix;
 
+		private final List<String> logged = new ArrayList<>();
+
 		public Bridge() {
 			this("");
 		}
@@ -212,7 +766,7 @@ public class AssetManagerTest {
 
 		@Override
 		public void doLog(String msg) {
-			System.out.println(this.prefix + msg);
+			this.logged.add(this.prefix + msg);
 		}
 
 		@Override
@@ -0,0 +1,199 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import eu.rageproject.assets.demo.DemoAsset;
+import eu.rageproject.assets.dialogue.DialogueAsset;
+import eu.rageproject.assets.logger.Logger;
+
+public class AssetStartupTest {
+
+	@Test
+	public void testAssetsAreCreatedAfterTheirDependencies() {
+		// Given
+		AssetManager scope = AssetManager.createScope();
+		final List<String> created = Collections.synchronizedList(new LinkedList<String>());
+
+		AssetStartup cut = new AssetStartup(scope);
+		cut.add(DialogueAsset.class, new IAssetFactory<DialogueAsset>() {
+			@Override
+			public DialogueAsset create() {
+				created.add("DialogueAsset");
+				return new DialogueAsset();
+			}
+		});
+		cut.add(DemoAsset.class, new IAssetFactory<DemoAsset>() {
+			@Override
+			public DemoAsset create() {
+				created.add("DemoAsset");
+				return new DemoAsset();
+			}
+		});
+		cut.add(Logger.class, new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				created.add("Logger");
+				return new Logger();
+			}
+		});
+
+		// When
+		List<IAsset> assets = cut.start();
+
+		// Then
+		assertThat(assets.get(0), instanceOf(Logger.class));
+		assertThat(created.size(), equalTo(3));
+		assertThat(created.indexOf("Logger"), lessThan(created.indexOf("DialogueAsset")));
+		assertThat(created.indexOf("Logger"), lessThan(created.indexOf("DemoAsset")));
+		// assets are created in the startup scope
+		assertThat(scope.findAssetsByType(IAsset.class).size(), equalTo(3));
+		assertThat(AssetManager.getInstance().findAssetsByType(DialogueAsset.class).isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testCyclesFailBeforeCreatingAnyAsset() {
+		// Given
+		final List<String> created = Collections.synchronizedList(new LinkedList<String>());
+		AssetStartup cut = new AssetStartup(AssetManager.createScope());
+		cut.add("A", new RecordingFactory("A", created), "B");
+		cut.add("B", new RecordingFactory("B", created), "C");
+		cut.add("C", new RecordingFactory("C", created), "A");
+		cut.add("D", new RecordingFactory("D", created));
+
+		// When
+		try {
+			cut.start();
+			fail();
+		} catch (IllegalStateException e) {
+			// Then
+			assertThat(e.getMessage(), equalTo("Dependency cycle between assets [A, B, C]"));
+		}
+		assertThat(created.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testFailuresStopDependents() {
+		// Given
+		final List<String> created = Collections.synchronizedList(new LinkedList<String>());
+		AssetStartup cut = new AssetStartup(AssetManager.createScope());
+		cut.add("A", new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				throw new IllegalArgumentException("broken");
+			}
+		});
+		cut.add("B", new RecordingFactory("B", created), "A");
+
+		// When
+		try {
+			cut.start();
+			fail();
+		} catch (RuntimeException e) {
+			// Then
+			assertThat(e.getMessage(), equalTo("Failed to start asset A"));
+		}
+		assertThat(created.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void testErrorsAreNotWrapped() {
+		// Given
+		final StackOverflowError error = new StackOverflowError();
+		AssetStartup cut = new AssetStartup(AssetManager.createScope());
+		cut.add("A", new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				throw error;
+			}
+		});
+
+		// When
+		try {
+			cut.start();
+			fail();
+		} catch (StackOverflowError e) {
+			// Then
+			assertThat(e, sameInstance(error));
+		}
+	}
+
+	@Test
+	public void testFailuresWaitForRunningAssets() {
+		// Given
+		final List<String> created = Collections.synchronizedList(new LinkedList<String>());
+		final CountDownLatch started = new CountDownLatch(1);
+		AssetStartup cut = new AssetStartup(AssetManager.createScope());
+		cut.add("A", new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				try {
+					started.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new IllegalArgumentException("broken");
+			}
+		});
+		cut.add("B", new IAssetFactory<Logger>() {
+			@Override
+			public Logger create() {
+				started.countDown();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				created.add("B");
+				return new Logger();
+			}
+		});
+		cut.add("C", new RecordingFactory("C", created), "B");
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+
+		// When
+		try {
+			cut.start(pool);
+			fail();
+		} catch (RuntimeException e) {
+			// Then
+			assertThat(e.getMessage(), equalTo("Failed to start asset A"));
+		} finally {
+			pool.shutdown();
+		}
+		// the asset being created is completed, its dependents are not
+		assertThat(created, contains("B"));
+	}
+
+	private static class RecordingFactory implements IAssetFactory<Logger> {
+
+		private final String name;
+
+		private final List<String> created;
+
+		RecordingFactory(final String name, final List<String> created) {
+			this.name = name;
+			this.created = created;
+		}
+
+		@Override
+		public Logger create() {
+			this.created.add(this.name);
+			return new Logger();
+		}
+	}
+}
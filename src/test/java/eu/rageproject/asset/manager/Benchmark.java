@@ -0,0 +1,42 @@
+package eu.rageproject.asset.manager;
+
+import java.util.logging.Logger;
+
+import org.junit.Assume;
+
+/**
+ * Opt-in benchmarks.
+ *
+ * <p>
+ * Benchmarks measure wall-clock time, which is not reliable enough for the
+ * unit suite. They are skipped unless the <code>benchmark</code> system
+ * property is set, e.g. <code>mvn test -Dbenchmark</code>, and report their
+ * measures through {@link java.util.logging}.
+ * </p>
+ */
+final class Benchmark {
+
+	private static final Logger log = Logger.getLogger("eu.rageproject.asset.manager.benchmark");
+
+	private Benchmark() {
+	}
+
+	/**
+	 * Skips the calling test unless benchmarks are enabled.
+	 */
+	static void assumeEnabled() {
+		Assume.assumeTrue("Benchmarks are run with -Dbenchmark", System.getProperty("benchmark") != null);
+	}
+
+	/**
+	 * Reports a measure.
+	 *
+	 * @param format
+	 *            The measure, see {@link String#format(String, Object...)}.
+	 * @param args
+	 *            The format arguments.
+	 */
+	static void report(final String format, final Object... args) {
+		log.info(String.format(format, args));
+	}
+}
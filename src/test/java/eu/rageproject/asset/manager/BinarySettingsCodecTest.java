@@ -0,0 +1,354 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.assets.logger.Logger;
+
+public class BinarySettingsCodecTest {
+
+	@Before
+	public void setUp() {
+		AssetManager.setInstance(null);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		// Given
+		BinarySettingsCodec cut = BinarySettingsCodec.getInstance();
+		RichSettings settings = RichSettings.sample(5);
+		settings.nickname = null;
+		settings.boost = null;
+
+		// When
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cut.write(settings, out);
+		RichSettings streamed = cut.read(new ByteArrayInputStream(out.toByteArray()), RichSettings.class);
+		RichSettings decoded = cut.decode(cut.encode(settings), RichSettings.class);
+
+		// Then
+		assertThat(streamed, equalTo(settings));
+		assertThat(decoded, equalTo(settings));
+		assertThat(decoded.nickname, nullValue());
+	}
+
+	@Test
+	public void testRejectsOtherLayouts() {
+		// Given
+		BinarySettingsCodec cut = BinarySettingsCodec.getInstance();
+		String data = cut.encode(RichSettings.sample(1));
+
+		// When
+		try {
+			cut.decode(data, OtherSettings.class);
+			fail("Settings of another layout must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			cut.encode(new UnsupportedSettings());
+			fail("Unsupported field types must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// Then
+	}
+
+	@Test
+	public void testAssetSettingsCodec() {
+		// Given
+		MemoryStorage storage = new MemoryStorage();
+		Logger asset = new Logger();
+		asset.setBridge(storage);
+		asset.setSettings(RichSettings.sample(3));
+		asset.setSettingsCodec(BinarySettingsCodec.getInstance());
+
+		// When
+		asset.SaveSettings("settings.bin");
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.bin");
+
+		// Then
+		assertThat(asset.getSettings(), equalTo((ISettings) RichSettings.sample(3)));
+		assertThat(storage.load("settings.bin"), equalTo(BinarySettingsCodec.getInstance().encode(RichSettings.sample(3))));
+	}
+
+	@Test
+	public void testCorruptLengthsAreRejected() {
+		// Given
+		BinarySettingsCodec cut = BinarySettingsCodec.getInstance();
+		// the first fields are a string and a list
+		byte[] string = corruptLength(cut, new OtherSettings());
+		byte[] list = corruptLength(cut, RichSettings.sample(1));
+
+		// When
+		try {
+			cut.read(new ByteArrayInputStream(string), OtherSettings.class);
+			fail("Truncated strings must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			cut.read(new ByteArrayInputStream(list), RichSettings.class);
+			fail("Truncated lists must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			cut.decode(DatatypeConverter.printBase64Binary(string), OtherSettings.class);
+			fail("Truncated strings must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// Then
+	}
+
+	@Test
+	public void testBinaryIsSmallerThanXml() throws IOException {
+		// Given
+		RichSettings settings = RichSettings.sample(50);
+
+		// When
+		int xmlSize = bytes(XmlSettingsCodec.getInstance(), settings).length;
+		int binarySize = bytes(BinarySettingsCodec.getInstance(), settings).length;
+
+		// Then
+		assertThat(binarySize * 3, lessThan(xmlSize));
+	}
+
+	@Test
+	public void testBinaryIsFasterThanXml() throws IOException {
+		Benchmark.assumeEnabled();
+
+		// Given
+		RichSettings settings = RichSettings.sample(50);
+		ISettingsCodec xml = XmlSettingsCodec.getInstance();
+		ISettingsCodec binary = BinarySettingsCodec.getInstance();
+		int iterations = 2000;
+
+		// warm up
+		roundTrips(xml, settings, iterations);
+		roundTrips(binary, settings, iterations);
+
+		// When
+		long xmlTime = roundTrips(xml, settings, iterations);
+		long binaryTime = roundTrips(binary, settings, iterations);
+
+		// Then
+		Benchmark.report("Settings round trips: XML %.0f/s, binary %.0f/s", iterations * 1e9 / xmlTime,
+				iterations * 1e9 / binaryTime);
+		assertThat(binaryTime * 2, lessThan(xmlTime));
+	}
+
+	/**
+	 * Encodes settings, then replaces everything after the header with the
+	 * largest length and a few bytes.
+	 */
+	private static byte[] corruptLength(final BinarySettingsCodec codec, final ISettings settings) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(DatatypeConverter.parseBase64Binary(codec.encode(settings)), 0, 5);
+		long bits = 2L * Integer.MAX_VALUE;
+		while ((bits & ~0x7FL) != 0) {
+			out.write((int) ((bits & 0x7F) | 0x80));
+			bits >>>= 7;
+		}
+		out.write((int) bits);
+		out.write(new byte[] { 1, 2, 3 }, 0, 3);
+		return out.toByteArray();
+	}
+
+	private static byte[] bytes(final ISettingsCodec codec, final ISettings settings) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.write(settings, out);
+		return out.toByteArray();
+	}
+
+	private static long roundTrips(final ISettingsCodec codec, final RichSettings settings, final int iterations)
+			throws IOException {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			codec.read(new ByteArrayInputStream(bytes(codec, settings)), RichSettings.class);
+		}
+		return System.nanoTime() - start;
+	}
+
+	public enum Difficulty {
+		EASY, NORMAL, HARD
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Binding {
+
+		private String action;
+
+		private int key;
+
+		private boolean repeat;
+
+		public Binding() {
+		}
+
+		Binding(final String action, final int key, final boolean repeat) {
+			this.action = action;
+			this.key = key;
+			this.repeat = repeat;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.action, this.key, this.repeat);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Binding)) {
+				return false;
+			}
+			Binding other = (Binding) obj;
+			return Objects.equals(this.action, other.action) && this.key == other.key && this.repeat == other.repeat;
+		}
+	}
+
+	/**
+	 * Settings using all the supported kinds of fields.
+	 */
+	@XmlRootElement(name = "settings")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class RichSettings extends BaseSettings {
+
+		private String nickname;
+
+		private int volume;
+
+		private long seed;
+
+		private short port;
+
+		private double sensitivity;
+
+		private float gamma;
+
+		private boolean fullScreen;
+
+		private char separator;
+
+		private Integer boost;
+
+		private Difficulty difficulty;
+
+		private Binding primary;
+
+		@XmlElement(name = "tag")
+		private List<String> tags = new ArrayList<>();
+
+		@XmlElement(name = "binding")
+		private List<Binding> bindings = new ArrayList<>();
+
+		static RichSettings sample(final int count) {
+			RichSettings settings = new RichSettings();
+			settings.nickname = "player <one>";
+			settings.volume = 7;
+			settings.seed = -1234567890123L;
+			settings.port = 8080;
+			settings.sensitivity = 0.75;
+			settings.gamma = 2.2f;
+			settings.fullScreen = true;
+			settings.separator = ';';
+			settings.boost = -3;
+			settings.difficulty = Difficulty.HARD;
+			settings.primary = new Binding("jump", 32, false);
+			for (int i = 0; i < count; i++) {
+				settings.tags.add("tag" + i);
+				settings.bindings.add(new Binding("action" + i, i, i % 2 == 0));
+			}
+			return settings;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.nickname, this.volume, this.seed, this.tags, this.bindings);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof RichSettings)) {
+				return false;
+			}
+			RichSettings other = (RichSettings) obj;
+			return Objects.equals(this.nickname, other.nickname) && this.volume == other.volume
+					&& this.seed == other.seed && this.port == other.port && this.sensitivity == other.sensitivity
+					&& this.gamma == other.gamma && this.fullScreen == other.fullScreen
+					&& this.separator == other.separator && Objects.equals(this.boost, other.boost)
+					&& this.difficulty == other.difficulty && Objects.equals(this.primary, other.primary)
+					&& this.tags.equals(other.tags) && this.bindings.equals(other.bindings);
+		}
+	}
+
+	public static class OtherSettings extends BaseSettings {
+
+		private String nickname;
+
+		private int volume;
+	}
+
+	public static class UnsupportedSettings extends BaseSettings {
+
+		private Map<String, String> values = new HashMap<>();
+	}
+
+	/**
+	 * In-memory {@link IDataStorage} bridge.
+	 */
+	static class MemoryStorage implements IBridge, IDataStorage {
+
+		private final Map<String, String> files = new HashMap<>();
+
+		@Override
+		public boolean delete(final String fileId) {
+			return this.files.remove(fileId) != null;
+		}
+
+		@Override
+		public boolean exists(final String fileId) {
+			return this.files.containsKey(fileId);
+		}
+
+		@Override
+		public String[] files() {
+			return this.files.keySet().toArray(new String[0]);
+		}
+
+		@Override
+		public String load(final String fileId) {
+			return this.files.get(fileId);
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			this.files.put(fileId, fileData);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.assets.demo.DemoAsset;
+import eu.rageproject.assets.dialogue.DialogueAsset;
+import eu.rageproject.assets.logger.Logger;
+
+public class DependencyResolverTest {
+
+	private AssetManager scope;
+
+	private AssetManager.Scope entered;
+
+	@Before
+	public void setUp() {
+		this.scope = AssetManager.createScope();
+		this.entered = this.scope.enter();
+	}
+
+	@After
+	public void tearDown() {
+		this.entered.close();
+	}
+
+	@Test
+	public void testResolutionFollowsRegistrations() {
+		// Given
+		DependencyResolver cut = this.scope.getDependencyResolver();
+		DemoAsset demo = new DemoAsset();
+
+		// When
+		boolean resolvedBefore = cut.isResolved(demo);
+		Logger logger = new Logger();
+		boolean resolvedAfterRegistration = cut.isResolved(demo);
+		logger.close();
+		boolean resolvedAfterUnregistration = cut.isResolved(demo);
+
+		// Then
+		assertThat(resolvedBefore, equalTo(false));
+		assertThat(resolvedAfterRegistration, equalTo(true));
+		assertThat(resolvedAfterUnregistration, equalTo(false));
+		assertThat(cut.getMissingDependencies(demo), equalTo(Collections.singletonMap("Logger", "1.2.3-*")));
+	}
+
+	@Test
+	public void testAssetsOfTheSameVersionAreCounted() {
+		// Given
+		DependencyResolver cut = this.scope.getDependencyResolver();
+		Logger first = new Logger();
+		Logger second = new Logger();
+
+		// When
+		first.close();
+		boolean resolvedWithOne = cut.isResolved("Logger", "1.2.3-*");
+		boolean resolvedNewRange = cut.isResolved("Logger", "1.0-*");
+		second.close();
+
+		// Then
+		assertThat(resolvedWithOne, equalTo(true));
+		assertThat(resolvedNewRange, equalTo(true));
+		assertThat(cut.isResolved("Logger", "1.2.3-*"), equalTo(false));
+		assertThat(cut.isResolved("Logger", "1.0-*"), equalTo(false));
+	}
+
+	@Test
+	public void testVersionRanges() {
+		// Given
+		DependencyResolver cut = this.scope.getDependencyResolver();
+		new Logger();
+		new DialogueAsset();
+
+		// When
+
+		// Then
+		assertThat(cut.isResolved("Logger", "1.2.3-*"), equalTo(true));
+		assertThat(cut.isResolved("Logger", "0.0-*"), equalTo(true));
+		assertThat(cut.isResolved("Logger", "1.2.3"), equalTo(true));
+		assertThat(cut.isResolved("Logger", "1.0-1.2.3"), equalTo(true));
+		assertThat(cut.isResolved("Logger", "1.0-1.2"), equalTo(false));
+		assertThat(cut.isResolved("Logger", "1.2.4-*"), equalTo(false));
+		assertThat(cut.isResolved("DialogueAsset", "1.2.3.25-1.2.3.25"), equalTo(true));
+		assertThat(cut.isResolved("DialogueAsset", "1.2.3.26-*"), equalTo(false));
+		assertThat(cut.isResolved("Unknown", "0.0-*"), equalTo(false));
+		assertThat(cut.isValid("Logger", "1.0-2.0-3.0"), equalTo(false));
+		assertThat(cut.isResolved("Logger", "1.0-2.0-3.0"), equalTo(false));
+	}
+
+	@Test
+	public void testOverflowingVersionsAreNotResolved() {
+		// Given
+		DependencyResolver cut = this.scope.getDependencyResolver();
+
+		// When
+		OverflowingLogger logger = new OverflowingLogger();
+
+		// Then
+		assertThat(this.scope.findAssetByClass("OverflowingLogger"), equalTo((Object) logger));
+		assertThat(cut.isResolved("OverflowingLogger", "0.0-*"), equalTo(false));
+		assertThat(this.scope.findNewestCompatible("OverflowingLogger", "0.0-*"), nullValue());
+	}
+
+	/**
+	 * Asset whose version does not fit a {@link Version}.
+	 */
+	static class OverflowingLogger extends Logger {
+
+		@Override
+		public String getVersion() {
+			return "1.70000";
+		}
+	}
+}
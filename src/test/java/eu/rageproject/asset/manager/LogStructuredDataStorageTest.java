@@ -0,0 +1,229 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.rageproject.asset.manager.BinarySettingsCodecTest.RichSettings;
+import eu.rageproject.assets.logger.Logger;
+
+public class LogStructuredDataStorageTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+
+	private LogStructuredDataStorage cut;
+
+	@Before
+	public void setUp() throws IOException {
+		AssetManager.setInstance(null);
+		this.directory = this.folder.newFolder("log").toPath();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		this.cut.close();
+	}
+
+	@Test
+	public void testSaveLoadAndDelete() {
+		// Given
+		this.cut.save("a.xml", "first");
+		this.cut.save("b.xml", "héllo");
+
+		// When
+		this.cut.save("a.xml", "second");
+		boolean deleted = this.cut.delete("b.xml");
+
+		// Then
+		assertThat(deleted, equalTo(true));
+		assertThat(this.cut.delete("b.xml"), equalTo(false));
+		assertThat(this.cut.load("a.xml"), equalTo("second"));
+		assertThat(this.cut.load("b.xml"), nullValue());
+		assertThat(this.cut.exists("a.xml"), equalTo(true));
+		assertThat(this.cut.exists("b.xml"), equalTo(false));
+		assertThat(this.cut.files(), arrayContainingInAnyOrder("a.xml"));
+		try {
+			this.cut.save("a.xml", null);
+			fail("Null data must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertThat(this.cut.load("a.xml"), equalTo("second"));
+	}
+
+	@Test
+	public void testIndexIsRebuiltOnOpen() throws IOException {
+		// Given
+		for (int i = 0; i < 100; i++) {
+			this.cut.save("file" + i % 10, "content " + i);
+		}
+		this.cut.delete("file3");
+		this.cut.close();
+
+		// When
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+
+		// Then
+		assertThat(this.cut.files().length, equalTo(9));
+		assertThat(this.cut.load("file3"), nullValue());
+		assertThat(this.cut.load("file4"), equalTo("content 94"));
+		this.cut.save("file3", "again");
+		assertThat(this.cut.load("file3"), equalTo("again"));
+	}
+
+	@Test
+	public void testCompactionReclaimsOverwrittenRecords() throws IOException {
+		// Given
+		this.cut.close();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false, false);
+		this.cut.save("deleted", "gone");
+		for (int i = 0; i < 500; i++) {
+			this.cut.save("settings.xml", "<settings>" + i + "</settings>");
+		}
+		this.cut.delete("deleted");
+		int segments = this.cut.getSegmentCount();
+
+		// When
+		this.cut.compact();
+		int compacted = this.cut.getSegmentCount();
+		this.cut.close();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+
+		// Then
+		assertThat(segments, greaterThan(10));
+		assertThat(compacted, lessThan(3));
+		assertThat(segmentFiles(), equalTo(compacted));
+		assertThat(this.cut.load("settings.xml"), equalTo("<settings>499</settings>"));
+		assertThat(this.cut.files(), arrayContainingInAnyOrder("settings.xml"));
+	}
+
+	@Test
+	public void testIncompleteRecordsAreTruncated() throws IOException {
+		// Given
+		this.cut.save("settings.xml", "complete");
+		this.cut.close();
+		Path segment = lastSegment();
+		long size = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 0, 0, 0, 5, 0, 0, 0, 9, 'a' }));
+		}
+
+		// When
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+		this.cut.save("other.xml", "appended");
+		this.cut.close();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+
+		// Then
+		assertThat(this.cut.load("settings.xml"), equalTo("complete"));
+		assertThat(this.cut.load("other.xml"), equalTo("appended"));
+		assertThat(Files.size(segment), greaterThan(size));
+	}
+
+	@Test
+	public void testAssetSettings() {
+		// Given
+		Logger asset = new Logger();
+		asset.setBridge(this.cut);
+		asset.setSettings(RichSettings.sample(3));
+
+		// When
+		asset.SaveSettings("settings.xml");
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.xml");
+
+		// Then
+		assertThat(asset.getSettings(), equalTo((ISettings) RichSettings.sample(3)));
+	}
+
+	@Test
+	public void testCompactionReclaimsDeletedRecords() throws IOException {
+		// Given
+		this.cut.close();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false, false);
+		char[] kept = new char[800];
+		Arrays.fill(kept, 'k');
+		// a mostly live segment that is never compacted
+		this.cut.save("kept", new String(kept));
+		char[] temporary = new char[100];
+		Arrays.fill(temporary, 't');
+		for (int i = 0; i < 200; i++) {
+			this.cut.save("temporary" + i, new String(temporary));
+			this.cut.delete("temporary" + i);
+		}
+		long written = segmentBytes();
+
+		// When
+		int rounds = 0;
+		while (this.cut.compact() > 0 && rounds < 20) {
+			rounds++;
+		}
+		long compacted = segmentBytes();
+		this.cut.close();
+		this.cut = new LogStructuredDataStorage(this.directory, 1024, false);
+
+		// Then
+		// tombstones are not copied once the records they delete are gone
+		assertThat(rounds, lessThan(20));
+		assertThat(written, greaterThan(20000L));
+		assertThat(compacted, lessThan(2 * 1024L));
+		assertThat(this.cut.load("kept"), equalTo(new String(kept)));
+		assertThat(this.cut.files(), arrayContainingInAnyOrder("kept"));
+	}
+
+	private long segmentBytes() throws IOException {
+		long bytes = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+			for (Path path : stream) {
+				bytes += Files.size(path);
+			}
+		}
+		return bytes;
+	}
+
+	private int segmentFiles() throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+			for (@SuppressWarnings("unused")
+			Path path : stream) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private Path lastSegment() throws IOException {
+		Path last = null;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+			for (Path path : stream) {
+				if (last == null || path.getFileName().toString().compareTo(last.getFileName().toString()) > 0) {
+					last = path;
+				}
+			}
+		}
+		return last;
+	}
+}
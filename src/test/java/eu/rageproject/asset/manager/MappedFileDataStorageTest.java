@@ -0,0 +1,169 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.rageproject.asset.manager.BinarySettingsCodecTest.RichSettings;
+import eu.rageproject.assets.logger.Logger;
+
+public class MappedFileDataStorageTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MappedFileDataStorage cut;
+
+	@Before
+	public void setUp() throws IOException {
+		AssetManager.setInstance(null);
+		this.cut = new MappedFileDataStorage(this.folder.newFolder("storage").toPath());
+	}
+
+	@Test
+	public void testSmallAndMappedFiles() throws IOException {
+		// Given
+		String small = "héllo";
+		String large = text(MappedFileDataStorage.MAP_THRESHOLD * 2);
+
+		// When
+		this.cut.save("small.txt", small);
+		this.cut.save("large.txt", large);
+		try (OutputStream out = this.cut.openWrite("streamed.txt")) {
+			out.write(large.getBytes(StandardCharsets.UTF_8));
+		}
+		ByteBuffer reused = ByteBuffer.allocate(64);
+		ByteBuffer smallBuffer = this.cut.load("small.txt", reused);
+		ByteBuffer largeBuffer = this.cut.load("large.txt", reused);
+		byte[] streamed = new byte[large.length()];
+		int read;
+		try (InputStream in = this.cut.openRead("streamed.txt")) {
+			read = in.read(streamed);
+			while (read < streamed.length) {
+				read += in.read(streamed, read, streamed.length - read);
+			}
+			assertThat(in.read(), equalTo(-1));
+		}
+
+		// Then
+		assertThat(this.cut.load("small.txt"), equalTo(small));
+		assertThat(this.cut.load("large.txt"), equalTo(large));
+		assertThat(this.cut.load("missing.txt"), nullValue());
+		assertThat(this.cut.load("missing.txt", reused), nullValue());
+		assertThat(smallBuffer, sameInstance(reused));
+		assertThat(StandardCharsets.UTF_8.decode(smallBuffer).toString(), equalTo(small));
+		assertThat(largeBuffer.isDirect(), equalTo(true));
+		assertThat(StandardCharsets.UTF_8.decode(largeBuffer).toString(), equalTo(large));
+		assertThat(new String(streamed, StandardCharsets.UTF_8), equalTo(large));
+		assertThat(this.cut.files(), arrayContainingInAnyOrder("small.txt", "large.txt", "streamed.txt"));
+	}
+
+	@Test
+	public void testFilesAreReplacedAndDeleted() throws IOException {
+		// Given
+		this.cut.save("settings.xml", "first");
+		Files.write(this.cut.getDirectory().resolve(".settings.xml.123.tmp"), new byte[1]);
+
+		// When
+		this.cut.save("settings.xml", "second");
+		boolean deleted = this.cut.delete("settings.xml");
+
+		// Then
+		assertThat(deleted, equalTo(true));
+		assertThat(this.cut.exists("settings.xml"), equalTo(false));
+		assertThat(this.cut.delete("settings.xml"), equalTo(false));
+		assertThat(this.cut.files().length, equalTo(0));
+		try {
+			this.cut.resolve("../outside.xml");
+			fail("File identifiers outside the directory must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAssetSettings() {
+		// Given
+		Logger asset = new Logger();
+		asset.setBridge(this.cut);
+		asset.setSettings(RichSettings.sample(3));
+
+		// When
+		asset.SaveSettings("settings.xml");
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.xml");
+
+		// Then
+		assertThat(asset.getSettings(), equalTo((ISettings) RichSettings.sample(3)));
+		assertThat(this.cut.load("settings.xml").contains("<settings>"), equalTo(true));
+	}
+
+	@Test
+	public void testFilesOfSubdirectoriesAreListed() {
+		// Given
+		this.cut.save("settings.xml", "root");
+		this.cut.save("assets/logger/settings.xml", "nested");
+
+		// When
+		String[] files = this.cut.files();
+
+		// Then
+		assertThat(files, arrayContainingInAnyOrder("settings.xml", "assets/logger/settings.xml"));
+		for (String file : files) {
+			assertThat(this.cut.exists(file), equalTo(true));
+		}
+		assertThat(this.cut.load("assets/logger/settings.xml"), equalTo("nested"));
+	}
+
+	@Test
+	public void testFilesTooLargeToLoadAreRejected() throws IOException {
+		// Given
+		try (RandomAccessFile file = new RandomAccessFile(this.cut.resolve("huge.bin").toFile(), "rw")) {
+			// sparse, no disk space is used
+			file.setLength(Integer.MAX_VALUE + 1L);
+		}
+
+		// When
+		try {
+			this.cut.load("huge.bin", null);
+			fail("Files larger than a buffer must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			this.cut.load("huge.bin");
+			fail("Files larger than an array must be rejected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// Then
+		try (InputStream in = this.cut.openRead("huge.bin")) {
+			assertThat(in.read(), equalTo(0));
+		}
+	}
+
+	private static String text(final int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + i % 26);
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,52 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PerfectHashIndexTest {
+
+	@Test
+	public void testKeysGetDistinctSlots() {
+		// Given
+		String[] keys = new String[10000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = String.format("Asset%d_%d", i % 7, i);
+		}
+
+		// When
+		PerfectHashIndex cut = PerfectHashIndex.build(keys);
+
+		// Then
+		Set<Integer> slots = new HashSet<>();
+		for (String key : keys) {
+			int slot = cut.indexOf(key);
+			assertThat(cut.keyAt(slot), equalTo(key));
+			slots.add(slot);
+		}
+		assertThat(slots.size(), equalTo(keys.length));
+		assertThat(cut.size(), equalTo(keys.length));
+	}
+
+	@Test
+	public void testUnknownKeys() {
+		// Given
+		PerfectHashIndex cut = PerfectHashIndex.build(new String[] { "Logger", "DemoAsset" });
+
+		// When
+
+		// Then
+		assertThat(cut.indexOf("DialogueAsset"), equalTo(-1));
+		assertThat(cut.indexOf(null), equalTo(-1));
+		assertThat(PerfectHashIndex.build(new String[0]).indexOf("Logger"), equalTo(-1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicatedKeys() {
+		PerfectHashIndex.build(new String[] { "Logger", "Logger" });
+	}
+}
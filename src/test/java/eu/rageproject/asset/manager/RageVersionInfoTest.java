@@ -0,0 +1,71 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.asset.manager.RageVersionInfo.Dependency;
+import eu.rageproject.assets.demo.DemoAsset;
+import eu.rageproject.assets.logger.Logger;
+
+public class RageVersionInfoTest {
+
+	@Before
+	public void setUp() {
+		AssetManager.setInstance(null);
+	}
+
+	@Test
+	public void testVersionInfoIsSharedPerClass() {
+		// Given
+		Logger asset1 = new Logger();
+		Logger asset2 = new Logger();
+		DemoAsset asset3 = new DemoAsset();
+
+		// When
+		RageVersionInfo info = asset1.getVersionInfo();
+
+		// Then
+		assertThat(asset2.getVersionInfo(), sameInstance(info));
+		assertThat(RageVersionInfo.getVersionInfo(Logger.class), sameInstance(info));
+		assertThat(info.isReadOnly(), equalTo(true));
+		assertThat(asset1.getVersion(), equalTo("1.2.3"));
+		assertThat(asset3.getVersionInfo().getDependencies().size(), equalTo(1));
+		assertThat(RageVersionInfo.loadVersionInfo(Logger.class).isReadOnly(), equalTo(false));
+	}
+
+	@Test
+	public void testSharedVersionInfoIsReadOnly() {
+		// Given
+		RageVersionInfo info = RageVersionInfo.getVersionInfo(DemoAsset.class);
+		Dependency dependency = info.getDependencies().get(0);
+
+		// When
+		try {
+			info.setMajor(42);
+			fail("Shared version information must be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			dependency.setMinVersion("0.0");
+			fail("Shared dependencies must be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			info.getDependencies().clear();
+			fail("Shared dependencies must be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		// Then
+		assertThat(info.getMajor(), equalTo(1));
+		assertThat(dependency.getMinVersion(), equalTo("1.2.3"));
+	}
+}
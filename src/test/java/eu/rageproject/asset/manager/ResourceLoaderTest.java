@@ -0,0 +1,127 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.rageproject.assets.logger.Logger;
+
+public class ResourceLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testResourcesAreCached() {
+		// Given
+		ResourceLoader cut = new ResourceLoader(ResourceLoader.DEFAULT_CAPACITY);
+
+		// When
+		String first = cut.getEmbeddedResource(Logger.class, "eu.rageproject.assets.logger",
+				"Logger.VersionAndDependencies.xml");
+		String second = cut.getResource(Logger.class, "/eu/rageproject/assets/logger/Logger.VersionAndDependencies.xml");
+		String relative = cut.getResource(Logger.class, "Logger.VersionAndDependencies.xml");
+
+		// Then
+		assertThat(first, containsString("<id>Logger</id>"));
+		assertThat(second, sameInstance(first));
+		assertThat(relative, equalTo(first));
+		assertThat(cut.getHitCount(), equalTo(1L));
+		assertThat(cut.getMissCount(), equalTo(2L));
+	}
+
+	@Test
+	public void testMissingResourcesAreEmpty() {
+		// Given
+		ResourceLoader cut = new ResourceLoader(ResourceLoader.DEFAULT_CAPACITY);
+
+		// When
+		String missing = cut.getEmbeddedResource(Logger.class, "eu.rageproject.assets.logger", "Missing.xml");
+		cut.getEmbeddedResource(Logger.class, "eu.rageproject.assets.logger", "Missing.xml");
+
+		// Then
+		assertThat(missing, equalTo(""));
+		assertThat(cut.getHitCount(), equalTo(1L));
+		assertThat(cut.getMissCount(), equalTo(1L));
+	}
+
+	@Test
+	public void testCacheIsBoundedByCharacters() {
+		// Given
+		String path = "Logger.VersionAndDependencies.xml";
+		int weight = path.length() + ResourceLoader.read(Logger.class, path).length();
+		ResourceLoader cut = new ResourceLoader(weight);
+		ResourceLoader small = new ResourceLoader(weight - 1);
+
+		// When
+		cut.getResource(Logger.class, path);
+		cut.getResource(Logger.class, "Missing.xml");
+		cut.getResource(Logger.class, path);
+		String uncached = small.getResource(Logger.class, path);
+
+		// Then
+		// the missing resource evicts the least recently used one
+		assertThat(cut.size(), equalTo(1));
+		assertThat(cut.getCachedCharacters(), equalTo((long) weight));
+		assertThat(cut.getHitCount(), equalTo(0L));
+		assertThat(cut.getMissCount(), equalTo(3L));
+		// resources larger than the cache are read but not cached
+		assertThat(uncached.length(), equalTo(weight - path.length()));
+		assertThat(small.size(), equalTo(0));
+		assertThat(small.getCachedCharacters(), equalTo(0L));
+	}
+
+	@Test
+	public void testCachedClassLoadersCanBeCollected() throws Exception {
+		// Given
+		ResourceLoader cut = new ResourceLoader(ResourceLoader.DEFAULT_CAPACITY);
+		File resources = this.folder.newFolder();
+		char[] large = new char[200 * 1024];
+		Arrays.fill(large, 'x');
+		Files.write(resources.toPath().resolve("large.txt"), new String(large).getBytes(StandardCharsets.UTF_8));
+		WeakReference<ClassLoader> loader = loadResources(cut, resources);
+
+		// When
+		for (int i = 0; i < 50 && loader.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		// Then
+		assertThat(loader.get() == null, equalTo(true));
+		assertThat(cut.size(), equalTo(0));
+		assertThat(cut.getCachedCharacters(), equalTo(0L));
+	}
+
+	/**
+	 * Reads a large resource through a class of a throwaway class loader.
+	 */
+	private static WeakReference<ClassLoader> loadResources(final ResourceLoader cut, final File resources)
+			throws IOException, ClassNotFoundException {
+		URL[] urls = new URL[] { resources.toURI().toURL(),
+				Logger.class.getProtectionDomain().getCodeSource().getLocation(),
+				BaseAsset.class.getProtectionDomain().getCodeSource().getLocation() };
+		try (URLClassLoader loader = new URLClassLoader(urls, null)) {
+			Class<?> clazz = Class.forName(Logger.class.getName(), false, loader);
+			assertThat(clazz == Logger.class, equalTo(false));
+			assertThat(cut.getResource(clazz, "/large.txt").length(), equalTo(200 * 1024));
+			assertThat(cut.size(), equalTo(1));
+			assertThat(cut.getCachedCharacters(), equalTo(200 * 1024L + "/large.txt".length()));
+			return new WeakReference<ClassLoader>(loader);
+		}
+	}
+}
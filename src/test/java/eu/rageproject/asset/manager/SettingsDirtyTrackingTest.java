@@ -0,0 +1,201 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.assets.logger.Logger;
+
+public class SettingsDirtyTrackingTest {
+
+	private CountingStorage storage;
+
+	private CountingCodec codec;
+
+	private Logger asset;
+
+	@Before
+	public void setUp() {
+		AssetManager.setInstance(null);
+		this.storage = new CountingStorage();
+		this.codec = new CountingCodec();
+		this.asset = new Logger();
+		this.asset.setBridge(this.storage);
+		this.asset.setSettingsCodec(this.codec);
+	}
+
+	@Test
+	public void testUnchangedVersionedSettingsAreNotSerialized() {
+		// Given
+		StampedSettings settings = new StampedSettings();
+		settings.setVolume(3);
+		this.asset.setSettings(settings);
+
+		// When
+		this.asset.SaveSettings("settings");
+		this.asset.SaveSettings("settings");
+		this.asset.saveDefaultSettings(true);
+		this.asset.saveDefaultSettings(true);
+		settings.setVolume(4);
+		this.asset.SaveSettings("settings");
+
+		// Then
+		assertThat(this.codec.encodes, equalTo(3));
+		assertThat(this.storage.saves, equalTo(2));
+		assertThat(this.storage.defaultSaves, equalTo(1));
+		assertThat(this.storage.load("settings"), equalTo("4"));
+	}
+
+	@Test
+	public void testUnchangedSettingsAreNotWritten() {
+		// Given
+		PlainSettings settings = new PlainSettings();
+		settings.volume = 3;
+		this.asset.setSettings(settings);
+
+		// When
+		this.asset.SaveSettings("settings");
+		this.asset.SaveSettings("settings");
+		this.asset.SaveSettings("other");
+		settings.volume = 4;
+		this.asset.SaveSettings("settings");
+
+		// Then
+		assertThat(this.codec.encodes, equalTo(4));
+		assertThat(this.storage.saves, equalTo(3));
+	}
+
+	@Test
+	public void testLoadedSettingsAreNotWrittenBack() {
+		// Given
+		this.storage.save("settings", "7");
+		this.asset.setSettings(new StampedSettings());
+
+		// When
+		this.asset.loadSettings("settings");
+		this.asset.SaveSettings("settings");
+		this.asset.markSettingsDirty();
+		this.asset.SaveSettings("settings");
+
+		// Then
+		assertThat(((StampedSettings) this.asset.getSettings()).volume, equalTo(7));
+		assertThat(this.codec.encodes, equalTo(1));
+		assertThat(this.storage.saves, equalTo(2));
+	}
+
+	public static class StampedSettings implements IVersionedSettings {
+
+		private int volume;
+
+		private long stamp;
+
+		public void setVolume(final int volume) {
+			this.volume = volume;
+			this.stamp++;
+		}
+
+		@Override
+		public long getModificationStamp() {
+			return this.stamp;
+		}
+	}
+
+	public static class PlainSettings implements ISettings {
+
+		private int volume;
+	}
+
+	/**
+	 * Encodes the volume of the settings as text.
+	 */
+	static class CountingCodec implements ISettingsCodec {
+
+		int encodes;
+
+		@Override
+		public String encode(final ISettings settings) {
+			this.encodes++;
+			return String.valueOf(settings instanceof StampedSettings ? ((StampedSettings) settings).volume
+					: ((PlainSettings) settings).volume);
+		}
+
+		@Override
+		public <T extends ISettings> T decode(final String data, final Class<T> type) {
+			StampedSettings settings = new StampedSettings();
+			settings.volume = Integer.parseInt(data);
+			return type.cast(settings);
+		}
+
+		@Override
+		public void write(final ISettings settings, final OutputStream out) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T extends ISettings> T read(final InputStream in, final Class<T> type) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * In-memory storage counting writes.
+	 */
+	static class CountingStorage implements IBridge, IDataStorage, IDefaultSettings {
+
+		private final Map<String, String> files = new HashMap<>();
+
+		int saves;
+
+		int defaultSaves;
+
+		@Override
+		public boolean delete(final String fileId) {
+			return this.files.remove(fileId) != null;
+		}
+
+		@Override
+		public boolean exists(final String fileId) {
+			return this.files.containsKey(fileId);
+		}
+
+		@Override
+		public String[] files() {
+			return this.files.keySet().toArray(new String[0]);
+		}
+
+		@Override
+		public String load(final String fileId) {
+			return this.files.get(fileId);
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			this.saves++;
+			this.files.put(fileId, fileData);
+		}
+
+		@Override
+		public boolean hasDefaultSettings(final String clazz, final String id) {
+			return this.files.containsKey(clazz + "/" + id);
+		}
+
+		@Override
+		public String loadDefaultSettings(final String clazz, final String id) {
+			return this.files.get(clazz + "/" + id);
+		}
+
+		@Override
+		public void saveDefaultSettings(final String clazz, final String id, final String fileData) {
+			this.defaultSaves++;
+			this.files.put(clazz + "/" + id, fileData);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.rageproject.asset.manager.SettingsDirtyTrackingTest.CountingCodec;
+import eu.rageproject.asset.manager.SettingsDirtyTrackingTest.CountingStorage;
+import eu.rageproject.asset.manager.SettingsDirtyTrackingTest.StampedSettings;
+import eu.rageproject.assets.logger.Logger;
+
+public class SettingsReloadTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileStorage storage;
+
+	private CountingCodec codec;
+
+	private Logger asset;
+
+	@Before
+	public void setUp() throws IOException {
+		AssetManager.setInstance(null);
+		this.storage = new FileStorage(this.folder.newFolder().toPath());
+		this.codec = new CountingCodec();
+		this.asset = new Logger();
+		this.asset.setBridge(this.storage);
+		this.asset.setSettingsCodec(this.codec);
+		this.asset.setSettings(new StampedSettings());
+	}
+
+	@Test
+	public void testReloadSkipsUnchangedSettings() throws IOException {
+		// Given
+		this.asset.SaveSettings("settings");
+		ISettings saved = this.asset.getSettings();
+
+		// When
+		boolean unchanged = this.asset.reloadSettings("settings");
+		this.storage.save("settings", "5");
+		boolean changed = this.asset.reloadSettings("settings");
+
+		// Then
+		assertThat(unchanged, equalTo(false));
+		assertThat(changed, equalTo(true));
+		assertThat(saved == this.asset.getSettings(), equalTo(false));
+		assertThat(volume(), equalTo(5));
+	}
+
+	@Test
+	public void testChangedFileIsReloaded() throws Exception {
+		// Given
+		this.asset.SaveSettings("settings");
+		ISettings saved = this.asset.getSettings();
+		Closeable watch = this.asset.watchSettings("settings");
+
+		// When
+		Files.write(this.storage.resolve("settings"), "7".getBytes(StandardCharsets.UTF_8));
+		long deadline = System.currentTimeMillis() + 30000;
+		while (volume() != 7 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		watch.close();
+
+		// Then
+		assertThat(saved == this.asset.getSettings(), equalTo(false));
+		assertThat(volume(), equalTo(7));
+	}
+
+	@Test
+	public void testSavesInProgressAreNotReloaded() throws Exception {
+		// Given
+		final Thread[] reloader = new Thread[1];
+		final boolean[] reloaded = new boolean[1];
+		this.asset.setBridge(new FileStorage(this.storage.directory) {
+			@Override
+			public void save(final String fileId, final String fileData) {
+				super.save(fileId, fileData);
+				// a watcher event arriving before the save returns
+				reloader[0] = new Thread() {
+					@Override
+					public void run() {
+						reloaded[0] = asset.reloadSettings(fileId);
+					}
+				};
+				reloader[0].start();
+				try {
+					reloader[0].join(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		StampedSettings settings = (StampedSettings) this.asset.getSettings();
+		settings.setVolume(3);
+
+		// When
+		this.asset.SaveSettings("settings");
+		reloader[0].join();
+
+		// Then
+		assertThat(reloaded[0], equalTo(false));
+		assertThat(this.asset.getSettings() == settings, equalTo(true));
+	}
+
+	@Test
+	public void testWatchedAssetsCanBeCollected() throws Exception {
+		// Given
+		AssetManager.setInstance(null);
+		AssetManager.getInstance().setWeakRegistry(true);
+		Logger watched = new Logger();
+		watched.setBridge(this.storage);
+		watched.setSettingsCodec(this.codec);
+		watched.setSettings(new StampedSettings());
+		watched.SaveSettings("collected");
+		watched.watchSettings("collected");
+		WeakReference<Logger> reference = new WeakReference<>(watched);
+		watched = null;
+
+		// When
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		// unwatched on the next change
+		this.storage.save("collected", "1");
+
+		// Then
+		assertThat(reference.get(), nullValue());
+	}
+
+	@Test
+	public void testOnlyFileStoragesAreWatched() throws IOException {
+		// Given
+		this.asset.setBridge(new CountingStorage());
+
+		// When
+		Closeable watch = this.asset.watchSettings("settings");
+
+		// Then
+		assertThat(watch, nullValue());
+		assertThat(this.asset.reloadSettings("settings"), equalTo(false));
+	}
+
+	private int volume() {
+		return Integer.parseInt(this.codec.encode(this.asset.getSettings()));
+	}
+
+	/**
+	 * Stores files in a directory.
+	 */
+	static class FileStorage implements IBridge, IFileDataStorage {
+
+		private final Path directory;
+
+		FileStorage(final Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public Path resolve(final String fileId) {
+			return this.directory.resolve(fileId);
+		}
+
+		@Override
+		public boolean delete(final String fileId) {
+			try {
+				return Files.deleteIfExists(resolve(fileId));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public boolean exists(final String fileId) {
+			return Files.exists(resolve(fileId));
+		}
+
+		@Override
+		public String[] files() {
+			List<String> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+				for (Path file : stream) {
+					files.add(file.getFileName().toString());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return files.toArray(new String[files.size()]);
+		}
+
+		@Override
+		public String load(final String fileId) {
+			try {
+				return new String(Files.readAllBytes(resolve(fileId)), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			try {
+				Files.write(resolve(fileId), fileData.getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXB;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.junit.Test;
+
+public class SettingsSerializerTest {
+
+	@Test
+	public void testRoundTrip() {
+		// Given
+		SettingsSerializer cut = SettingsSerializer.getInstance();
+		SampleSettings settings = SampleSettings.sample(10);
+
+		// When
+		String xml = cut.toXml(settings);
+		SampleSettings copy = cut.fromXml(xml, SampleSettings.class);
+
+		// Then
+		assertThat(copy, equalTo(settings));
+		assertThat(xml, equalTo(jaxbToXml(settings)));
+	}
+
+	@Test
+	public void testContextsAndMarshallersAreReused() throws Exception {
+		// Given
+		final SettingsSerializer cut = SettingsSerializer.getInstance();
+		SampleSettings settings = SampleSettings.sample(3);
+
+		// When
+		String xml = cut.toXml(settings);
+		JAXBContext context = cut.getContext(SampleSettings.class);
+		Marshaller marshaller = cut.getMarshaller(SampleSettings.class);
+		Unmarshaller unmarshaller = cut.getUnmarshaller(SampleSettings.class);
+		cut.fromXml(cut.toXml(settings), SampleSettings.class);
+		final Object[] other = new Object[3];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				other[0] = cut.getContext(SampleSettings.class);
+				other[1] = cut.getMarshaller(SampleSettings.class);
+				other[2] = cut.getUnmarshaller(SampleSettings.class);
+			}
+		};
+		thread.start();
+		thread.join();
+
+		// Then
+		// one context per class, (un)marshallers per class and thread
+		assertThat(cut.getContext(SampleSettings.class), sameInstance(context));
+		assertThat(cut.getMarshaller(SampleSettings.class), sameInstance(marshaller));
+		assertThat(cut.getUnmarshaller(SampleSettings.class), sameInstance(unmarshaller));
+		assertThat(other[0], sameInstance((Object) context));
+		assertThat(other[1], not(sameInstance((Object) marshaller)));
+		assertThat(other[2], not(sameInstance((Object) unmarshaller)));
+		assertThat(cut.getContext(BinarySettingsCodecTest.RichSettings.class), not(sameInstance(context)));
+		assertThat(cut.toXml(settings), equalTo(xml));
+	}
+
+	@Test
+	public void testSerializerThroughput() {
+		Benchmark.assumeEnabled();
+
+		// Given
+		SettingsSerializer cut = SettingsSerializer.getInstance();
+		SampleSettings settings = SampleSettings.sample(20);
+		String xml = cut.toXml(settings);
+		int iterations = 2000;
+
+		// warm up
+		runJaxb(settings, xml, iterations);
+		runSerializer(cut, settings, xml, iterations);
+
+		// When
+		long jaxb = runJaxb(settings, xml, iterations);
+		long serializer = runSerializer(cut, settings, xml, iterations);
+
+		// Then
+		Benchmark.report("Settings round trips: JAXB helpers %.0f/s, SettingsSerializer %.0f/s",
+				iterations * 1e9 / jaxb, iterations * 1e9 / serializer);
+		assertThat(serializer, lessThanOrEqualTo(jaxb));
+	}
+
+	private static long runJaxb(final SampleSettings settings, final String xml, final int iterations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			jaxbToXml(settings);
+			JAXB.unmarshal(new StringReader(xml), SampleSettings.class);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long runSerializer(final SettingsSerializer cut, final SampleSettings settings, final String xml,
+			final int iterations) {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			cut.toXml(settings);
+			cut.fromXml(xml, SampleSettings.class);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static String jaxbToXml(final ISettings settings) {
+		StringWriter writer = new StringWriter();
+		JAXB.marshal(settings, writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Sample settings.
+	 */
+	@XmlRootElement(name = "settings")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class SampleSettings extends BaseSettings {
+
+		private String name;
+
+		private int volume;
+
+		private boolean fullScreen;
+
+		private double sensitivity;
+
+		@XmlElement(name = "key")
+		private List<String> keys = new ArrayList<>();
+
+		static SampleSettings sample(final int keys) {
+			SampleSettings settings = new SampleSettings();
+			settings.name = "player <one>";
+			settings.volume = 7;
+			settings.fullScreen = true;
+			settings.sensitivity = 0.75;
+			for (int i = 0; i < keys; i++) {
+				settings.keys.add("action" + i);
+			}
+			return settings;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.name.hashCode() ^ this.volume ^ this.keys.hashCode();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof SampleSettings)) {
+				return false;
+			}
+			SampleSettings other = (SampleSettings) obj;
+			return this.name.equals(other.name) && this.volume == other.volume && this.fullScreen == other.fullScreen
+					&& this.sensitivity == other.sensitivity && this.keys.equals(other.keys);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.asset.manager.SettingsDirtyTrackingTest.CountingStorage;
+
+public class SettingsWriterTest {
+
+	private SettingsWriter writer;
+
+	private BlockingStorage storage;
+
+	@Before
+	public void setUp() {
+		this.writer = new SettingsWriter();
+		this.storage = new BlockingStorage();
+	}
+
+	@After
+	public void tearDown() {
+		this.storage.release.countDown();
+		this.writer.shutdown(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testQueuedSavesOfTheSameFileAreCoalesced() throws Exception {
+		// Given
+		Future<Boolean> first = this.writer.save(this.storage, "settings", "1");
+		this.storage.started.await(1, TimeUnit.SECONDS);
+
+		// When
+		Future<Boolean> second = this.writer.save(this.storage, "settings", "2");
+		Future<Boolean> other = this.writer.save(this.storage, "other", "a");
+		Future<Boolean> third = this.writer.save(this.storage, "settings", "3");
+		this.storage.release.countDown();
+
+		// Then
+		assertThat(third, sameInstance(second));
+		assertThat(first.get(1, TimeUnit.SECONDS), equalTo(true));
+		assertThat(third.get(1, TimeUnit.SECONDS), equalTo(true));
+		assertThat(other.get(1, TimeUnit.SECONDS), equalTo(true));
+		assertThat(this.storage.writes, contains("settings=1", "settings=3", "other=a"));
+	}
+
+	@Test
+	public void testShutdownFlushesQueuedSaves() {
+		// Given
+		this.storage.release.countDown();
+		for (int i = 0; i < 100; i++) {
+			this.writer.save(this.storage, "settings" + i, String.valueOf(i));
+		}
+
+		// When
+		boolean flushed = this.writer.shutdown(1, TimeUnit.SECONDS);
+
+		// Then
+		assertThat(flushed, equalTo(true));
+		assertThat(this.storage.writes.size(), equalTo(100));
+		assertThat(this.writer.getQueuedCount(), equalTo(0));
+	}
+
+	@Test
+	public void testShutdownWaitIsBounded() {
+		// Given
+		this.writer.save(this.storage, "settings", "1");
+
+		// When
+		long start = System.nanoTime();
+		boolean flushed = this.writer.shutdown(100, TimeUnit.MILLISECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// Then
+		assertThat(flushed, equalTo(false));
+		assertThat(elapsed < 1000, equalTo(true));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testSaveAfterShutdownIsRejected() {
+		this.writer.shutdown(1, TimeUnit.SECONDS);
+		this.writer.save(this.storage, "settings", "1");
+	}
+
+	@Test
+	public void testAsyncSaveOfAsset() throws Exception {
+		// Given
+		AssetManager.setInstance(null);
+		CountingStorage storage = new CountingStorage();
+		SettingsDirtyTrackingTest.PlainSettings settings = new SettingsDirtyTrackingTest.PlainSettings();
+		eu.rageproject.assets.logger.Logger asset = new eu.rageproject.assets.logger.Logger();
+		asset.setBridge(storage);
+		asset.setSettingsCodec(new SettingsDirtyTrackingTest.CountingCodec());
+		asset.setSettings(settings);
+
+		// When
+		Future<Boolean> saved = asset.saveSettingsAsync("settings");
+		boolean written = saved.get(1, TimeUnit.SECONDS);
+		Future<Boolean> unchanged = asset.saveSettingsAsync("settings");
+
+		// Then
+		assertThat(written, equalTo(true));
+		assertThat(unchanged.isDone(), equalTo(true));
+		assertThat(storage.saves, equalTo(1));
+		assertThat(storage.load("settings"), equalTo("0"));
+	}
+
+	@Test
+	public void testSaveWaitsForQueuedSaveOfTheSameFile() throws Exception {
+		// Given
+		AssetManager.setInstance(null);
+		SlowStorage storage = new SlowStorage();
+		SettingsDirtyTrackingTest.StampedSettings settings = new SettingsDirtyTrackingTest.StampedSettings();
+		eu.rageproject.assets.logger.Logger asset = new eu.rageproject.assets.logger.Logger();
+		asset.setBridge(storage);
+		asset.setSettingsCodec(new SettingsDirtyTrackingTest.CountingCodec());
+		asset.setSettings(settings);
+		settings.setVolume(1);
+		Future<Boolean> queued = asset.saveSettingsAsync("settings");
+
+		// When
+		settings.setVolume(2);
+		asset.SaveSettings("settings");
+
+		// Then
+		// the queued save is written first, not over the newer one
+		assertThat(queued.get(1, TimeUnit.SECONDS), equalTo(true));
+		assertThat(storage.load("settings"), equalTo("2"));
+		assertThat(storage.saves, equalTo(2));
+	}
+
+	@Test
+	public void testFailedSaveIsReported() throws Exception {
+		// Given
+		this.storage.release.countDown();
+		this.storage.fail = true;
+		final boolean[] failed = new boolean[1];
+
+		// When
+		Future<Boolean> saved = this.writer.save(this.storage, "settings", "1", new Runnable() {
+			@Override
+			public void run() {
+				failed[0] = true;
+			}
+		});
+
+		// Then
+		try {
+			saved.get(1, TimeUnit.SECONDS);
+			fail("The storage failure is not reported");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause() instanceof IllegalStateException, equalTo(true));
+		}
+		assertThat(failed[0], equalTo(true));
+	}
+
+	/**
+	 * In-memory storage whose writes on the settings writer thread are slow.
+	 */
+	static class SlowStorage extends CountingStorage {
+
+		@Override
+		public synchronized String load(final String fileId) {
+			return super.load(fileId);
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			if (Thread.currentThread().getName().equals("settings-writer")) {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (this) {
+				super.save(fileId, fileData);
+			}
+		}
+
+		@Override
+		public synchronized boolean exists(final String fileId) {
+			return super.exists(fileId);
+		}
+	}
+
+	/**
+	 * Storage that records writes and blocks them until released.
+	 */
+	static class BlockingStorage implements IDataStorage {
+
+		final CountDownLatch started = new CountDownLatch(1);
+
+		final CountDownLatch release = new CountDownLatch(1);
+
+		final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+
+		volatile boolean fail;
+
+		@Override
+		public boolean delete(final String fileId) {
+			return false;
+		}
+
+		@Override
+		public boolean exists(final String fileId) {
+			return false;
+		}
+
+		@Override
+		public String[] files() {
+			return new String[0];
+		}
+
+		@Override
+		public String load(final String fileId) {
+			return null;
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			this.started.countDown();
+			try {
+				this.release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (this.fail) {
+				throw new IllegalStateException("Storage failure");
+			}
+			this.writes.add(fileId + "=" + fileData);
+		}
+	}
+}
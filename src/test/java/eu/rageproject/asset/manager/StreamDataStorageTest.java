@@ -0,0 +1,216 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.rageproject.asset.manager.BinarySettingsCodecTest.MemoryStorage;
+import eu.rageproject.asset.manager.BinarySettingsCodecTest.RichSettings;
+import eu.rageproject.assets.logger.Logger;
+
+public class StreamDataStorageTest {
+
+	@Before
+	public void setUp() {
+		AssetManager.setInstance(null);
+	}
+
+	@Test
+	public void testAdaptedStorage() throws IOException {
+		// Given
+		MemoryStorage storage = new MemoryStorage();
+		IStreamDataStorage cut = DataStorageAdapter.adapt(storage);
+		char[] large = new char[20000];
+		Arrays.fill(large, 'x');
+		String text = "café " + new String(large);
+
+		// When
+		try (OutputStream out = cut.openWrite("text")) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		}
+		ByteBuffer small = ByteBuffer.allocate(16);
+		ByteBuffer loaded = cut.load("text", small);
+		cut.save("copy", ByteBuffer.wrap("copied".getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		assertThat(storage.load("text"), equalTo(text));
+		assertThat(new String(loaded.array(), 0, loaded.limit(), StandardCharsets.UTF_8), equalTo(text));
+		assertThat(cut.load("missing", small), nullValue());
+		assertThat(storage.load("copy"), equalTo("copied"));
+		assertThat(DataStorageAdapter.adapt(cut), sameInstance(cut));
+		try {
+			cut.openRead("missing");
+			fail("Missing files cannot be read");
+		} catch (NoSuchFileException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSettingsAreStreamed() throws Exception {
+		// Given
+		StreamStorage storage = new StreamStorage();
+		Logger asset = new Logger();
+		asset.setBridge(storage);
+		asset.setSettings(RichSettings.sample(3));
+		asset.setSettingsCodec(BinarySettingsCodec.getInstance());
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		BinarySettingsCodec.getInstance().write(RichSettings.sample(3), expected);
+
+		// When
+		asset.SaveSettings("settings.bin");
+		asset.SaveSettings("settings.bin");
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.bin");
+		asset.SaveSettings("settings.bin");
+		asset.setSettings(RichSettings.sample(4));
+		boolean written = asset.saveSettingsAsync("settings.bin").get(1, TimeUnit.SECONDS);
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.bin");
+
+		// Then
+		assertThat(written, equalTo(true));
+		assertThat(asset.getSettings(), equalTo((ISettings) RichSettings.sample(4)));
+		assertThat(storage.writes, equalTo(2));
+		assertThat(storage.stringSaves, equalTo(0));
+		assertThat(storage.stringLoads, equalTo(0));
+		asset.setSettings(RichSettings.sample(3));
+		asset.markSettingsDirty();
+		asset.SaveSettings("settings.bin");
+		assertThat(storage.files.get("settings.bin"), equalTo(expected.toByteArray()));
+	}
+
+	@Test
+	public void testCustomXmlIsStreamed() {
+		// Given
+		StreamStorage storage = new StreamStorage();
+		CommentedXmlAsset asset = new CommentedXmlAsset();
+		asset.setBridge(storage);
+		asset.setSettings(RichSettings.sample(3));
+
+		// When
+		asset.SaveSettings("settings.xml");
+		asset.setSettings(new RichSettings());
+		asset.loadSettings("settings.xml");
+
+		// Then
+		assertThat(new String(storage.files.get("settings.xml"), StandardCharsets.UTF_8).startsWith(
+				CommentedXmlAsset.COMMENT), equalTo(true));
+		assertThat(asset.parsed, equalTo(1));
+		assertThat(asset.getSettings(), equalTo((ISettings) RichSettings.sample(3)));
+		assertThat(storage.stringSaves, equalTo(0));
+	}
+
+	/**
+	 * Asset customising its XML settings.
+	 */
+	static class CommentedXmlAsset extends Logger {
+
+		static final String COMMENT = "<!-- custom -->";
+
+		int parsed;
+
+		@Override
+		protected String settingsToXml() {
+			return COMMENT + super.settingsToXml();
+		}
+
+		@Override
+		protected ISettings settingsFromXml(final String xml) {
+			this.parsed++;
+			return super.settingsFromXml(xml.substring(COMMENT.length()));
+		}
+	}
+
+	/**
+	 * In-memory {@link IStreamDataStorage} bridge counting writes.
+	 */
+	static class StreamStorage implements IBridge, IStreamDataStorage {
+
+		final Map<String, byte[]> files = new HashMap<>();
+
+		int writes;
+
+		int stringSaves;
+
+		int stringLoads;
+
+		@Override
+		public boolean delete(final String fileId) {
+			return this.files.remove(fileId) != null;
+		}
+
+		@Override
+		public boolean exists(final String fileId) {
+			return this.files.containsKey(fileId);
+		}
+
+		@Override
+		public String[] files() {
+			return this.files.keySet().toArray(new String[0]);
+		}
+
+		@Override
+		public String load(final String fileId) {
+			this.stringLoads++;
+			byte[] data = this.files.get(fileId);
+			return data == null ? null : new String(data, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void save(final String fileId, final String fileData) {
+			this.stringSaves++;
+			this.files.put(fileId, fileData.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public synchronized InputStream openRead(final String fileId) throws IOException {
+			byte[] data = this.files.get(fileId);
+			if (data == null) {
+				throw new NoSuchFileException(fileId);
+			}
+			return new ByteArrayInputStream(data);
+		}
+
+		@Override
+		public synchronized OutputStream openWrite(final String fileId) {
+			this.writes++;
+			return new ByteArrayOutputStream() {
+				@Override
+				public void close() {
+					synchronized (StreamStorage.this) {
+						StreamStorage.this.files.put(fileId, toByteArray());
+					}
+				}
+			};
+		}
+
+		@Override
+		public ByteBuffer load(final String fileId, final ByteBuffer buffer) throws IOException {
+			return DataStorageAdapter.load(this, fileId, buffer);
+		}
+
+		@Override
+		public void save(final String fileId, final ByteBuffer fileData) throws IOException {
+			DataStorageAdapter.save(this, fileId, fileData);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.rageproject.assets.demo.DemoAsset;
+import eu.rageproject.assets.dialogue.DialogueAsset;
+import eu.rageproject.assets.logger.Logger;
+
+public class VersionInfoGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGenerateVersionInfoClasses() throws Exception {
+		// Given
+		// test resources are copied to the root of the test classpath
+		Path resources = Paths.get(Logger.class.getResource("/").toURI());
+		Path output = this.folder.getRoot().toPath();
+
+		// When
+		int count = VersionInfoGenerator.generate(resources, output);
+
+		// Then
+		assertThat(count, equalTo(3));
+		Path generated = output.resolve("eu/rageproject/assets/demo/DemoAssetVersionAndDependencies.java");
+		String source = new String(Files.readAllBytes(generated), StandardCharsets.UTF_8);
+		assertThat(source, containsString("package eu.rageproject.assets.demo;"));
+		assertThat(source, containsString("public final class DemoAssetVersionAndDependencies {"));
+		assertThat(source, containsString("info.setBuild(3);"));
+		assertThat(source, containsString("dependency.setMinVersion(\"1.2.3\");"));
+		assertThat(source, containsString("dependency.setName(\"Logger\");"));
+	}
+
+	@Test
+	public void testGeneratedVersionInfoMatchesXml() {
+		for (Class<?> type : new Class<?>[] { Logger.class, DemoAsset.class, DialogueAsset.class }) {
+			// Given
+			RageVersionInfo xml = RageVersionInfo.loadVersionInfo(type);
+
+			// When
+			RageVersionInfo generated = RageVersionInfo.loadGeneratedVersionInfo(type);
+
+			// Then
+			assertThat(generated, notNullValue());
+			assertThat(generated.getId(), equalTo(xml.getId()));
+			assertThat(generated.toString(), equalTo(xml.toString()));
+			assertThat(generated.getMaturity(), equalTo(xml.getMaturity()));
+			assertThat(generated.getDependencies().size(), equalTo(xml.getDependencies().size()));
+			for (int i = 0; i < xml.getDependencies().size(); i++) {
+				assertThat(generated.getDependencies().get(i).getName(), equalTo(xml.getDependencies().get(i).getName()));
+				assertThat(generated.getDependencies().get(i).getMinVersion(),
+						equalTo(xml.getDependencies().get(i).getMinVersion()));
+				assertThat(generated.getDependencies().get(i).getMaxVersion(),
+						equalTo(xml.getDependencies().get(i).getMaxVersion()));
+			}
+		}
+		assertThat(RageVersionInfo.loadGeneratedVersionInfo(String.class), nullValue());
+	}
+
+	@Test
+	public void testLibraryVersionInfoIsGenerated() {
+		// Given
+		RageVersionInfo xml = RageVersionInfo.loadVersionInfo(BaseAsset.class);
+
+		// When
+		RageVersionInfo generated = RageVersionInfo.loadGeneratedVersionInfo(BaseAsset.class);
+
+		// Then
+		assertThat(generated, notNullValue());
+		assertThat(generated.toString(), equalTo(xml.toString()));
+	}
+}
@@ -0,0 +1,101 @@
+package eu.rageproject.asset.manager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class VersionTest {
+
+	@Test
+	public void testVersionOrdering() {
+		assertThat(new Version("1.1").compareTo(new Version("1.1.0")), lessThan(0));
+		assertThat(new Version("1.1").compareTo(new Version("1.1.1")), lessThan(0));
+		assertThat(new Version("1.1").compareTo(new Version("1.1.2.3")), lessThan(0));
+		assertThat(new Version("1.1.2").compareTo(new Version("1.1.2.4")), lessThan(0));
+		assertThat(new Version("1.2.5").compareTo(new Version("1.2.3.4")), greaterThan(0));
+		assertThat(new Version("1.2.3.25").compareTo(new Version("1.2.3.25")), equalTo(0));
+		assertThat(new Version("65534.0").compareTo(new Version("1.0")), greaterThan(0));
+		assertThat(new Version("2.0").compareTo(null), greaterThan(0));
+	}
+
+	@Test
+	public void testPackedVersions() {
+		// Given
+		Version cut = new Version(1, 2, 3, 25);
+
+		// When
+		Version unpacked = Version.fromLong(cut.toLong());
+
+		// Then
+		assertThat(unpacked, equalTo(cut));
+		assertThat(unpacked.getMajor(), equalTo(1));
+		assertThat(unpacked.getMinor(), equalTo(2));
+		assertThat(unpacked.getBuild(), equalTo(3));
+		assertThat(unpacked.getRevision(), equalTo(25));
+		assertThat(new Version(1, 2).getBuild(), equalTo(-1));
+		assertThat(new Version("1.2.3").toString(), equalTo("1.2.3"));
+		assertThat(new Version("not a version"), equalTo(new Version(0, 0)));
+		assertThat(new Version("1.2.3.4.5"), equalTo(new Version(0, 0)));
+		assertThat(new Version("1..2"), equalTo(new Version(0, 0)));
+	}
+
+	@Test
+	public void testOverflowingComponentsAreRejected() {
+		// Given
+		VersionRange range = VersionRange.parse("1.0-1.70000");
+
+		// When
+		try {
+			Version.parse("1.70000");
+			fail("Components greater than the maximum must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// Then
+		assertThat(new Version("1.65534").getMinor(), equalTo(Version.MAX_COMPONENT));
+		assertThat(range.isValid(), equalTo(false));
+		assertThat(range.contains(new Version(0, 0)), equalTo(false));
+		assertThat(range.contains(new Version(1, 5)), equalTo(false));
+	}
+
+	@Test
+	public void testParseIsCached() {
+		// Given
+
+		// When
+		Version first = Version.parse("3.4.5");
+		Version second = Version.parse(new String("3.4.5"));
+
+		// Then
+		assertThat(second, sameInstance(first));
+		assertThat(VersionRange.parse(new String("1.0-*")), sameInstance(VersionRange.parse("1.0-*")));
+	}
+
+	@Test
+	public void testVersionRanges() {
+		// Given
+		VersionRange open = VersionRange.parse("1.2.3-*");
+		VersionRange closed = VersionRange.parse("1.0-1.2.3");
+		VersionRange exact = VersionRange.parse("1.2.3");
+		VersionRange invalid = VersionRange.parse("1.0-2.0-3.0");
+
+		// When
+
+		// Then
+		assertThat(open.contains(new Version(1, 2, 3)), equalTo(true));
+		assertThat(open.contains(new Version(65534, 0)), equalTo(true));
+		assertThat(open.contains(new Version(1, 2)), equalTo(false));
+		assertThat(closed.contains(new Version(1, 0)), equalTo(true));
+		assertThat(closed.contains(new Version(1, 2, 3, 0)), equalTo(false));
+		assertThat(exact.contains(Version.parse("1.2.3")), equalTo(true));
+		assertThat(exact.contains(Version.parse("1.2.3.0")), equalTo(false));
+		assertThat(invalid.isValid(), equalTo(false));
+		assertThat(invalid.contains(new Version(1, 5)), equalTo(false));
+	}
+}
@@ -3,9 +3,7 @@ package eu.rageproject.assets.demo;
 import java.util.Map;
 import java.util.TreeMap;
 
-import eu.rageproject.asset.manager.AssetManager;
 import eu.rageproject.asset.manager.BaseAsset;
-import eu.rageproject.asset.manager.IAsset;
 import eu.rageproject.asset.manager.IDataStorage;
 import eu.rageproject.assets.logger.Logger;
 
@@ -109,12 +107,10 @@ public class DemoAsset extends BaseAsset {
 	}
 
 	public void publicMethod(String msg) {
-		// ! TODO Nicer would be to return the correct type of Asset.
-		//
-		Iterable<IAsset> loggers = AssetManager.getInstance().findAssetsByClass("Logger");
+		Iterable<Logger> loggers = getAssetManager().findAssetsByType(Logger.class);
 
-		for (IAsset asset : loggers) {
-			((Logger) asset).log(asset.getId() + " - " + msg);
+		for (Logger logger : loggers) {
+			logger.log(logger.getId() + " - " + msg);
 		}
 	}
 }
@@ -10,7 +10,6 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
-import eu.rageproject.asset.manager.AssetManager;
 import eu.rageproject.asset.manager.BaseAsset;
 import eu.rageproject.assets.logger.Logger;
 
@@ -30,7 +29,7 @@ public class DialogueAsset extends BaseAsset {
 	public DialogueAsset() {
 		this.dialogues = new ArrayList<>();
 		this.states = new ArrayList<>();
-		this.logger = AssetManager.getInstance().<Logger>findAssetByClass("Logger");
+		this.logger = getAssetManager().findAssetByType(Logger.class);
 	}
 
 	public Dialogue interact(String actor, String player, int response) {